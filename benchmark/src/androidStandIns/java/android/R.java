@@ -0,0 +1,15 @@
+package android;
+
+/**
+ * Stand-in of the framework resources used by the library, for benchmarks on a plain JVM.
+ */
+public final class R {
+
+    public static final class attr {
+        public static final int textSize = 0x01010095;
+        public static final int textColor = 0x01010098;
+        public static final int textColorHint = 0x0101009a;
+        public static final int horizontalSpacing = 0x01010114;
+        public static final int verticalSpacing = 0x01010115;
+    }
+}
@@ -0,0 +1,13 @@
+package android.content;
+
+import android.content.res.Configuration;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public interface ComponentCallbacks {
+
+    void onConfigurationChanged(Configuration newConfig);
+
+    void onLowMemory();
+}
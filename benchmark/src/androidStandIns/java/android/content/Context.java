@@ -0,0 +1,37 @@
+package android.content;
+
+import android.content.res.AssetManager;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+
+/**
+ * Stand-in for benchmarks on a plain JVM: only resources, with the metrics of a 480 dpi phone, and assets.
+ */
+public class Context {
+
+    private final Resources mResources = new Resources();
+    private final AssetManager mAssets = new AssetManager();
+
+    public Resources getResources() {
+        return mResources;
+    }
+
+    public AssetManager getAssets() {
+        return mAssets;
+    }
+
+    public TypedArray obtainStyledAttributes(AttributeSet set, int[] attrs) {
+        return new TypedArray();
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public void registerComponentCallbacks(ComponentCallbacks callback) {
+    }
+
+    public void unregisterComponentCallbacks(ComponentCallbacks callback) {
+    }
+}
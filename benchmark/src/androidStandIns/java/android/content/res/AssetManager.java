@@ -0,0 +1,17 @@
+package android.content.res;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stand-in for benchmarks on a plain JVM: reads the library assets, relative to the benchmark project directory.
+ */
+public final class AssetManager {
+
+    private static final String ASSET_DIR = "../library/src/main/assets/";
+
+    public InputStream open(String fileName) throws IOException {
+        return new FileInputStream(ASSET_DIR + fileName);
+    }
+}
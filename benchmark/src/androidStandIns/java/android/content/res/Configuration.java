@@ -0,0 +1,7 @@
+package android.content.res;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public final class Configuration {
+}
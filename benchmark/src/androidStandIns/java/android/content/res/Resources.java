@@ -0,0 +1,29 @@
+package android.content.res;
+
+import android.util.DisplayMetrics;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public class Resources {
+
+    private static final Resources SYSTEM = new Resources();
+
+    private final DisplayMetrics mMetrics = new DisplayMetrics();
+
+    public Resources() {
+        mMetrics.density = 3;
+        mMetrics.scaledDensity = 3;
+        mMetrics.densityDpi = 480;
+        mMetrics.widthPixels = 1080;
+        mMetrics.heightPixels = 1920;
+    }
+
+    public static Resources getSystem() {
+        return SYSTEM;
+    }
+
+    public DisplayMetrics getDisplayMetrics() {
+        return mMetrics;
+    }
+}
@@ -0,0 +1,18 @@
+package android.content.res;
+
+/**
+ * Stand-in for benchmarks on a plain JVM, every attribute has its default value.
+ */
+public class TypedArray {
+
+    public int getDimensionPixelSize(int index, int defValue) {
+        return defValue;
+    }
+
+    public int getColor(int index, int defValue) {
+        return defValue;
+    }
+
+    public void recycle() {
+    }
+}
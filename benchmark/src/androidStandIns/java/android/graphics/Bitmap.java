@@ -0,0 +1,41 @@
+package android.graphics;
+
+/**
+ * Stand-in for benchmarks on a plain JVM, holds no pixels.
+ */
+public final class Bitmap {
+
+    public enum Config {
+        ALPHA_8, RGB_565, ARGB_8888
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+
+    private Bitmap(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        return new Bitmap(width, height);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getByteCount() {
+        return mWidth * mHeight * 4;
+    }
+
+    public void eraseColor(int color) {
+    }
+
+    public void recycle() {
+    }
+}
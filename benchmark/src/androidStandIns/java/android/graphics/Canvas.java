@@ -0,0 +1,142 @@
+package android.graphics;
+
+import java.util.ArrayDeque;
+
+/**
+ * Stand-in for benchmarks on a plain JVM, draws nothing.<br/>
+ * Draw calls are counted and their coordinates summed in {@link #checksum}, so the JIT can't remove the drawing
+ * code, and benchmarks can set the clip bounds to draw only a viewport of a large view.
+ */
+public class Canvas {
+
+    /**
+     * Number of draw calls.
+     */
+    public long drawCount;
+
+    /**
+     * Sum of the coordinates and glyph counts of all draw calls.
+     */
+    public double checksum;
+
+    private final Rect mClip = new Rect(0, 0, Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2);
+    private int mTranslateX;
+    private int mTranslateY;
+    private Bitmap mBitmap;
+    private final ArrayDeque<int[]> mSaved = new ArrayDeque<int[]>();
+
+    public Canvas() {
+    }
+
+    public Canvas(Bitmap bitmap) {
+        mBitmap = bitmap;
+    }
+
+    public void setBitmap(Bitmap bitmap) {
+        mBitmap = bitmap;
+    }
+
+    /**
+     * Set the clip bounds in canvas coordinates without translation, for benchmarks.
+     */
+    public void setClip(int left, int top, int right, int bottom) {
+        mClip.set(left, top, right, bottom);
+    }
+
+    public boolean getClipBounds(Rect bounds) {
+        bounds.set(mClip.left - mTranslateX, mClip.top - mTranslateY, mClip.right - mTranslateX,
+                mClip.bottom - mTranslateY);
+        return !bounds.isEmpty();
+    }
+
+    public int getWidth() {
+        return mBitmap != null ? mBitmap.getWidth() : 0;
+    }
+
+    public int getHeight() {
+        return mBitmap != null ? mBitmap.getHeight() : 0;
+    }
+
+    public boolean isHardwareAccelerated() {
+        return false;
+    }
+
+    public int save() {
+        mSaved.push(new int[]{mClip.left, mClip.top, mClip.right, mClip.bottom, mTranslateX, mTranslateY});
+        return mSaved.size();
+    }
+
+    public void restore() {
+        int[] saved = mSaved.pop();
+        mClip.set(saved[0], saved[1], saved[2], saved[3]);
+        mTranslateX = saved[4];
+        mTranslateY = saved[5];
+    }
+
+    public void restoreToCount(int count) {
+        while (mSaved.size() >= count) {
+            restore();
+        }
+    }
+
+    public void translate(float dx, float dy) {
+        mTranslateX += (int) dx;
+        mTranslateY += (int) dy;
+    }
+
+    public boolean clipRect(int left, int top, int right, int bottom) {
+        return mClip.intersect(left + mTranslateX, top + mTranslateY, right + mTranslateX, bottom + mTranslateY);
+    }
+
+    public boolean clipRect(Rect rect) {
+        return clipRect(rect.left, rect.top, rect.right, rect.bottom);
+    }
+
+    public void drawColor(int color) {
+        drawCount++;
+    }
+
+    public void drawColor(int color, PorterDuff.Mode mode) {
+        drawCount++;
+    }
+
+    public void drawText(String text, float x, float y, Paint paint) {
+        drawCount++;
+        checksum += x + y + text.length();
+    }
+
+    public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+        drawCount++;
+        checksum += x + y + count;
+    }
+
+    public void drawText(CharSequence text, int start, int end, float x, float y, Paint paint) {
+        drawCount++;
+        checksum += x + y + end - start;
+    }
+
+    public void drawPosText(char[] text, int index, int count, float[] pos, Paint paint) {
+        drawCount++;
+        checksum += pos[0] + pos[1] + count;
+    }
+
+    public void drawRect(Rect r, Paint paint) {
+        drawCount++;
+        checksum += r.left + r.top;
+    }
+
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        drawCount++;
+        checksum += left + top;
+    }
+
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        drawCount++;
+        checksum += left + top;
+    }
+
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        drawCount++;
+        checksum += dst.left + dst.top;
+    }
+}
@@ -0,0 +1,12 @@
+package android.graphics;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public class Color {
+    public static final int TRANSPARENT = 0;
+    public static final int BLACK = 0xff000000;
+    public static final int RED = 0xffff0000;
+    public static final int GREEN = 0xff00ff00;
+    public static final int BLUE = 0xff0000ff;
+}
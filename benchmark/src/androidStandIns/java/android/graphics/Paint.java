@@ -0,0 +1,207 @@
+package android.graphics;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.<br/>
+ * Text is measured with fixed advances per char class instead of a font: hanzi and full width punctuation 1 em,
+ * latin letters and digits about 0.55 em, spaces 0.28 em. Measuring costs a loop over the chars, so benchmarks
+ * show the cost of the library code around it rather than the cost of a font engine.
+ */
+public class Paint {
+    public static final int ANTI_ALIAS_FLAG = 0x01;
+    public static final int FILTER_BITMAP_FLAG = 0x02;
+    public static final int LINEAR_TEXT_FLAG = 0x40;
+    public static final int FAKE_BOLD_TEXT_FLAG = 0x20;
+
+    public enum Style {
+        FILL, STROKE, FILL_AND_STROKE
+    }
+
+    public static class FontMetrics {
+        public float top;
+        public float ascent;
+        public float descent;
+        public float bottom;
+        public float leading;
+    }
+
+    public static class FontMetricsInt {
+        public int top;
+        public int ascent;
+        public int descent;
+        public int bottom;
+        public int leading;
+    }
+
+    private float mTextSize = 12;
+    private int mColor = 0xff000000;
+    private Style mStyle = Style.FILL;
+    private Typeface mTypeface;
+    private int mFlags;
+
+    public Paint() {
+    }
+
+    public Paint(int flags) {
+        mFlags = flags;
+    }
+
+    public Paint(Paint paint) {
+        set(paint);
+    }
+
+    public void set(Paint src) {
+        mTextSize = src.mTextSize;
+        mColor = src.mColor;
+        mStyle = src.mStyle;
+        mTypeface = src.mTypeface;
+        mFlags = src.mFlags;
+    }
+
+    public int getFlags() {
+        return mFlags;
+    }
+
+    public void setFlags(int flags) {
+        mFlags = flags;
+    }
+
+    public float getTextSkewX() {
+        return 0;
+    }
+
+    public float getTextScaleX() {
+        return 1;
+    }
+
+    public float getLetterSpacing() {
+        return 0;
+    }
+
+    public void setStyle(Style style) {
+        mStyle = style;
+    }
+
+    public Style getStyle() {
+        return mStyle;
+    }
+
+    public void setColor(int color) {
+        mColor = color;
+    }
+
+    public int getColor() {
+        return mColor;
+    }
+
+    public void setAlpha(int a) {
+        mColor = (mColor & 0x00ffffff) | (a << 24);
+    }
+
+    public void setTextSize(float textSize) {
+        mTextSize = textSize;
+    }
+
+    public float getTextSize() {
+        return mTextSize;
+    }
+
+    public Typeface getTypeface() {
+        return mTypeface;
+    }
+
+    public Typeface setTypeface(Typeface typeface) {
+        mTypeface = typeface;
+        return typeface;
+    }
+
+    public void setAntiAlias(boolean aa) {
+    }
+
+    public void setFilterBitmap(boolean filter) {
+    }
+
+    public float measureText(String text) {
+        return measureText(text, 0, text.length());
+    }
+
+    public float measureText(char[] text, int index, int count) {
+        float em = 0;
+        for (int i = index; i < index + count; i++) {
+            em += advance(text[i]);
+        }
+        return em * mTextSize;
+    }
+
+    public float measureText(CharSequence text, int start, int end) {
+        float em = 0;
+        for (int i = start; i < end; i++) {
+            em += advance(text.charAt(i));
+        }
+        return em * mTextSize;
+    }
+
+    public void getTextBounds(String text, int start, int end, Rect bounds) {
+        bounds.set(0, Math.round(-0.88F * mTextSize), (int) Math.ceil(measureText(text, start, end)),
+                Math.round(0.12F * mTextSize));
+    }
+
+    public void getTextBounds(char[] text, int index, int count, Rect bounds) {
+        bounds.set(0, Math.round(-0.88F * mTextSize), (int) Math.ceil(measureText(text, index, count)),
+                Math.round(0.12F * mTextSize));
+    }
+
+    public float getFontMetrics(FontMetrics metrics) {
+        if (metrics != null) {
+            metrics.top = -1.06F * mTextSize;
+            metrics.ascent = -0.93F * mTextSize;
+            metrics.descent = 0.24F * mTextSize;
+            metrics.bottom = 0.27F * mTextSize;
+            metrics.leading = 0;
+        }
+        return 1.17F * mTextSize;
+    }
+
+    public FontMetrics getFontMetrics() {
+        FontMetrics metrics = new FontMetrics();
+        getFontMetrics(metrics);
+        return metrics;
+    }
+
+    public int getFontMetricsInt(FontMetricsInt metrics) {
+        if (metrics != null) {
+            metrics.top = (int) Math.floor(-1.06F * mTextSize);
+            metrics.ascent = Math.round(-0.93F * mTextSize);
+            metrics.descent = Math.round(0.24F * mTextSize);
+            metrics.bottom = (int) Math.ceil(0.27F * mTextSize);
+            metrics.leading = 0;
+        }
+        return Math.round(1.17F * mTextSize);
+    }
+
+    public FontMetricsInt getFontMetricsInt() {
+        FontMetricsInt metrics = new FontMetricsInt();
+        getFontMetricsInt(metrics);
+        return metrics;
+    }
+
+    public float getFontSpacing() {
+        return getFontMetrics(null);
+    }
+
+    // advance of a char in em
+    static float advance(char c) {
+        if (c >= 0x2e80) {
+            return c >= 0xff61 && c <= 0xffdc ? 0.5F : 1.0F; // hanzi, full width forms, half width kana
+        }
+        if (c == ' ') {
+            return 0.28F;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return 0.65F;
+        }
+        if (c < 0x80) {
+            return 0.55F;
+        }
+        return 0.6F; // tone marked vowels & other latin
+    }
+}
@@ -0,0 +1,13 @@
+package android.graphics;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public class PorterDuff {
+
+    public enum Mode {
+        CLEAR,
+        SRC,
+        SRC_OVER
+    }
+}
@@ -0,0 +1,79 @@
+package android.graphics;
+
+/**
+ * Stand-in for benchmarks on a plain JVM, same as the framework class.
+ */
+public final class Rect {
+    public int left;
+    public int top;
+    public int right;
+    public int bottom;
+
+    public Rect() {
+    }
+
+    public Rect(int left, int top, int right, int bottom) {
+        set(left, top, right, bottom);
+    }
+
+    public void set(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public void set(Rect r) {
+        set(r.left, r.top, r.right, r.bottom);
+    }
+
+    public void setEmpty() {
+        set(0, 0, 0, 0);
+    }
+
+    public boolean isEmpty() {
+        return left >= right || top >= bottom;
+    }
+
+    public int width() {
+        return right - left;
+    }
+
+    public int height() {
+        return bottom - top;
+    }
+
+    public void offset(int dx, int dy) {
+        left += dx;
+        right += dx;
+        top += dy;
+        bottom += dy;
+    }
+
+    public boolean contains(int x, int y) {
+        return left < right && top < bottom && x >= left && x < right && y >= top && y < bottom;
+    }
+
+    public boolean intersect(int l, int t, int r, int b) {
+        if (left < r && l < right && top < b && t < bottom) {
+            set(Math.max(left, l), Math.max(top, t), Math.min(right, r), Math.min(bottom, b));
+            return true;
+        }
+        return false;
+    }
+
+    public void union(int l, int t, int r, int b) {
+        if (l >= r || t >= b) {
+            return;
+        }
+        if (isEmpty()) {
+            set(l, t, r, b);
+        } else {
+            set(Math.min(left, l), Math.min(top, t), Math.max(right, r), Math.max(bottom, b));
+        }
+    }
+
+    public void union(Rect r) {
+        union(r.left, r.top, r.right, r.bottom);
+    }
+}
@@ -0,0 +1,12 @@
+package android.graphics;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public class Typeface {
+    public static final Typeface DEFAULT = new Typeface();
+    public static final Typeface DEFAULT_BOLD = new Typeface();
+    public static final Typeface SANS_SERIF = new Typeface();
+    public static final Typeface SERIF = new Typeface();
+    public static final Typeface MONOSPACE = new Typeface();
+}
@@ -0,0 +1,22 @@
+package android.os;
+
+/**
+ * Stand-in for benchmarks on a plain JVM, runs as the API level the library compiles against.
+ */
+public class Build {
+
+    public static final String FINGERPRINT = "benchmark";
+
+    public static class VERSION {
+        public static final int SDK_INT = VERSION_CODES.M;
+    }
+
+    public static class VERSION_CODES {
+        public static final int HONEYCOMB = 11;
+        public static final int ICE_CREAM_SANDWICH = 14;
+        public static final int JELLY_BEAN_MR2 = 18;
+        public static final int KITKAT = 19;
+        public static final int LOLLIPOP = 21;
+        public static final int M = 23;
+    }
+}
@@ -0,0 +1,21 @@
+package android.os;
+
+/**
+ * Stand-in for benchmarks on a plain JVM, runs posted work right away.
+ */
+public class Handler {
+
+    public Handler() {
+    }
+
+    public Handler(Looper looper) {
+    }
+
+    public boolean post(Runnable r) {
+        r.run();
+        return true;
+    }
+
+    public void removeCallbacks(Runnable r) {
+    }
+}
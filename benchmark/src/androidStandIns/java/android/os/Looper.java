@@ -0,0 +1,17 @@
+package android.os;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public class Looper {
+
+    private static final Looper MAIN = new Looper();
+
+    public static Looper getMainLooper() {
+        return MAIN;
+    }
+
+    public static Looper myLooper() {
+        return MAIN;
+    }
+}
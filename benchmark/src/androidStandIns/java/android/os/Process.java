@@ -0,0 +1,11 @@
+package android.os;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public class Process {
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+
+    public static void setThreadPriority(int priority) {
+    }
+}
@@ -0,0 +1,13 @@
+package android.os;
+
+/**
+ * Stand-in for benchmarks on a plain JVM, like the framework class while not tracing.
+ */
+public final class Trace {
+
+    public static void beginSection(String sectionName) {
+    }
+
+    public static void endSection() {
+    }
+}
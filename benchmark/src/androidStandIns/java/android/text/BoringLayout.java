@@ -0,0 +1,69 @@
+package android.text;
+
+import android.graphics.Paint;
+
+/**
+ * Stand-in for benchmarks on a plain JVM: text without line breaks and right to left chars is boring, and laid out
+ * in one line.
+ */
+public class BoringLayout extends Layout {
+
+    public static class Metrics extends Paint.FontMetricsInt {
+        public int width;
+    }
+
+    private int mHeight;
+
+    public BoringLayout(CharSequence source, TextPaint paint, int outerWidth, Alignment align, float spacingMult,
+                        float spacingAdd, Metrics metrics, boolean includePad) {
+        super(source, paint, outerWidth);
+        mHeight = metrics.descent - metrics.ascent;
+    }
+
+    public static Metrics isBoring(CharSequence text, TextPaint paint) {
+        return isBoring(text, paint, null);
+    }
+
+    public static Metrics isBoring(CharSequence text, TextPaint paint, Metrics metrics) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\t' || (c >= 0x0590 && c <= 0x08ff)) {
+                return null;
+            }
+        }
+        if (metrics == null) {
+            metrics = new Metrics();
+        }
+        paint.getFontMetricsInt(metrics);
+        metrics.width = (int) Math.ceil(paint.measureText(text, 0, length));
+        return metrics;
+    }
+
+    public static BoringLayout make(CharSequence source, TextPaint paint, int outerWidth, Alignment align,
+                                    float spacingMult, float spacingAdd, Metrics metrics, boolean includePad) {
+        return new BoringLayout(source, paint, outerWidth, align, spacingMult, spacingAdd, metrics, includePad);
+    }
+
+    public BoringLayout replaceOrMake(CharSequence source, TextPaint paint, int outerWidth, Alignment align,
+                                      float spacingMult, float spacingAdd, Metrics metrics, boolean includePad) {
+        replaceWith(source, paint, outerWidth);
+        mHeight = metrics.descent - metrics.ascent;
+        return this;
+    }
+
+    @Override
+    public int getLineCount() {
+        return 1;
+    }
+
+    @Override
+    public int getLineTop(int line) {
+        return line == 0 ? 0 : mHeight;
+    }
+
+    @Override
+    public int getLineStart(int line) {
+        return line == 0 ? 0 : getText().length();
+    }
+}
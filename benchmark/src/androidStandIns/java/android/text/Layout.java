@@ -0,0 +1,85 @@
+package android.text;
+
+import android.graphics.Canvas;
+
+/**
+ * Stand-in for benchmarks on a plain JVM: lines of a fixed height, see {@link StaticLayout}.
+ */
+public abstract class Layout {
+
+    public enum Alignment {
+        ALIGN_NORMAL, ALIGN_OPPOSITE, ALIGN_CENTER
+    }
+
+    private CharSequence mText;
+    private TextPaint mPaint;
+    private int mWidth;
+
+    protected Layout(CharSequence text, TextPaint paint, int width) {
+        mText = text;
+        mPaint = paint;
+        mWidth = width;
+    }
+
+    void replaceWith(CharSequence text, TextPaint paint, int width) {
+        mText = text;
+        mPaint = paint;
+        mWidth = width;
+    }
+
+    public static float getDesiredWidth(CharSequence source, TextPaint paint) {
+        return getDesiredWidth(source, 0, source.length(), paint);
+    }
+
+    public static float getDesiredWidth(CharSequence source, int start, int end, TextPaint paint) {
+        float max = 0;
+        int lineStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || source.charAt(i) == '\n') {
+                max = Math.max(max, paint.measureText(source, lineStart, i));
+                lineStart = i + 1;
+            }
+        }
+        return max;
+    }
+
+    public CharSequence getText() {
+        return mText;
+    }
+
+    public TextPaint getPaint() {
+        return mPaint;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return getLineTop(getLineCount());
+    }
+
+    public abstract int getLineCount();
+
+    public abstract int getLineTop(int line);
+
+    public abstract int getLineStart(int line);
+
+    public int getLineEnd(int line) {
+        return getLineStart(line + 1);
+    }
+
+    public float getLineWidth(int line) {
+        return mPaint.measureText(mText, getLineStart(line), getLineEnd(line));
+    }
+
+    public float getLineMax(int line) {
+        return getLineWidth(line);
+    }
+
+    public void draw(Canvas canvas) {
+        for (int i = 0; i < getLineCount(); i++) {
+            canvas.drawText(mText, getLineStart(i), getLineEnd(i), 0, getLineTop(i + 1), mPaint);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package android.text;
+
+/**
+ * Stand-in for benchmarks on a plain JVM: breaks lines at any char where the next one doesn't fit, and at '\n'.
+ * Each char is measured once, which is roughly what the framework does with its measured text.
+ */
+public class StaticLayout extends Layout {
+
+    private int[] mLineStarts = new int[16];
+    private int mLineCount;
+    private final int mLineHeight;
+
+    public StaticLayout(CharSequence source, TextPaint paint, int width, Alignment align, float spacingMult,
+                        float spacingAdd, boolean includePad) {
+        super(source, paint, width);
+        mLineHeight = Math.round(paint.getFontSpacing() * spacingMult + spacingAdd);
+
+        int length = source.length();
+        float lineWidth = 0;
+        addLine(0);
+        for (int i = 0; i < length; i++) {
+            char c = source.charAt(i);
+            if (c == '\n') {
+                addLine(i + 1);
+                lineWidth = 0;
+                continue;
+            }
+            float w = paint.measureText(source, i, i + 1);
+            if (lineWidth + w > width && lineWidth > 0) {
+                addLine(i);
+                lineWidth = 0;
+            }
+            lineWidth += w;
+        }
+        if (mLineCount + 1 > mLineStarts.length) {
+            grow();
+        }
+        mLineStarts[mLineCount] = length;
+    }
+
+    private void addLine(int start) {
+        if (mLineCount + 2 > mLineStarts.length) {
+            grow();
+        }
+        mLineStarts[mLineCount++] = start;
+    }
+
+    private void grow() {
+        int[] starts = new int[mLineStarts.length * 2];
+        System.arraycopy(mLineStarts, 0, starts, 0, mLineStarts.length);
+        mLineStarts = starts;
+    }
+
+    @Override
+    public int getLineCount() {
+        return mLineCount;
+    }
+
+    @Override
+    public int getLineTop(int line) {
+        return line * mLineHeight;
+    }
+
+    @Override
+    public int getLineStart(int line) {
+        return mLineStarts[line];
+    }
+}
@@ -0,0 +1,20 @@
+package android.text;
+
+import android.graphics.Paint;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public class TextPaint extends Paint {
+
+    public TextPaint() {
+    }
+
+    public TextPaint(int flags) {
+        super(flags);
+    }
+
+    public TextPaint(Paint paint) {
+        super(paint);
+    }
+}
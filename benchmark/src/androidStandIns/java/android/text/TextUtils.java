@@ -0,0 +1,23 @@
+package android.text;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public class TextUtils {
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+
+    public static void getChars(CharSequence s, int start, int end, char[] dest, int destoff) {
+        if (s instanceof String) {
+            ((String) s).getChars(start, end, dest, destoff);
+        } else if (s instanceof StringBuilder) {
+            ((StringBuilder) s).getChars(start, end, dest, destoff);
+        } else {
+            for (int i = start; i < end; i++) {
+                dest[destoff++] = s.charAt(i);
+            }
+        }
+    }
+}
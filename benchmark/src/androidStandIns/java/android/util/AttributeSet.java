@@ -0,0 +1,7 @@
+package android.util;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public interface AttributeSet {
+}
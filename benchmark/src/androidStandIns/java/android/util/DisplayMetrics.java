@@ -0,0 +1,12 @@
+package android.util;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public class DisplayMetrics {
+    public float density;
+    public float scaledDensity;
+    public int densityDpi;
+    public int widthPixels;
+    public int heightPixels;
+}
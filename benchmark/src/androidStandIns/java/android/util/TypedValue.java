@@ -0,0 +1,21 @@
+package android.util;
+
+/**
+ * Stand-in for benchmarks on a plain JVM, same conversions as the framework class.
+ */
+public class TypedValue {
+    public static final int COMPLEX_UNIT_PX = 0;
+    public static final int COMPLEX_UNIT_DIP = 1;
+    public static final int COMPLEX_UNIT_SP = 2;
+
+    public static float applyDimension(int unit, float value, DisplayMetrics metrics) {
+        switch (unit) {
+            case COMPLEX_UNIT_DIP:
+                return value * metrics.density;
+            case COMPLEX_UNIT_SP:
+                return value * metrics.scaledDensity;
+            default:
+                return value;
+        }
+    }
+}
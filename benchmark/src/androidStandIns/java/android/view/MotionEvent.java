@@ -0,0 +1,46 @@
+package android.view;
+
+/**
+ * Stand-in for benchmarks on a plain JVM: an event with an action and a position.
+ */
+public final class MotionEvent {
+
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+    public static final int ACTION_CANCEL = 3;
+
+    private int mAction;
+    private float mX;
+    private float mY;
+
+    private MotionEvent() {
+    }
+
+    public static MotionEvent obtain(long downTime, long eventTime, int action, float x, float y, int metaState) {
+        MotionEvent event = new MotionEvent();
+        event.mAction = action;
+        event.mX = x;
+        event.mY = y;
+        return event;
+    }
+
+    public int getAction() {
+        return mAction;
+    }
+
+    public int getActionMasked() {
+        return mAction;
+    }
+
+    public float getX() {
+        return mX;
+    }
+
+    public float getY() {
+        return mY;
+    }
+
+    public void recycle() {
+    }
+}
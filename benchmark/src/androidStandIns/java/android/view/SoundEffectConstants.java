@@ -0,0 +1,9 @@
+package android.view;
+
+/**
+ * Stand-in for benchmarks on a plain JVM.
+ */
+public class SoundEffectConstants {
+
+    public static final int CLICK = 0;
+}
@@ -0,0 +1,212 @@
+package android.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AttributeSet;
+
+/**
+ * Stand-in for benchmarks on a plain JVM: measure, layout and draw are called directly by benchmarks, there is no
+ * view tree.
+ */
+public class View {
+
+    public static class MeasureSpec {
+        private static final int MODE_SHIFT = 30;
+        private static final int MODE_MASK = 0x3 << MODE_SHIFT;
+
+        public static final int UNSPECIFIED = 0;
+        public static final int EXACTLY = 1 << MODE_SHIFT;
+        public static final int AT_MOST = 2 << MODE_SHIFT;
+
+        public static int makeMeasureSpec(int size, int mode) {
+            return (size & ~MODE_MASK) | (mode & MODE_MASK);
+        }
+
+        public static int getMode(int measureSpec) {
+            return measureSpec & MODE_MASK;
+        }
+
+        public static int getSize(int measureSpec) {
+            return measureSpec & ~MODE_MASK;
+        }
+    }
+
+    private static final Handler HANDLER = new Handler(Looper.getMainLooper());
+
+    private final Context mContext;
+    private final Rect mInvalidated = new Rect();
+
+    private int mPaddingLeft;
+    private int mPaddingTop;
+    private int mPaddingRight;
+    private int mPaddingBottom;
+
+    private int mMeasuredWidth;
+    private int mMeasuredHeight;
+
+    private int mLeft;
+    private int mTop;
+    private int mRight;
+    private int mBottom;
+
+    private boolean mAttached;
+
+    public View(Context context) {
+        mContext = context;
+    }
+
+    public View(Context context, AttributeSet attrs) {
+        mContext = context;
+    }
+
+    public View(Context context, AttributeSet attrs, int defStyleAttr) {
+        mContext = context;
+    }
+
+    public Context getContext() {
+        return mContext;
+    }
+
+    public boolean isInEditMode() {
+        return false;
+    }
+
+    public void setPadding(int left, int top, int right, int bottom) {
+        mPaddingLeft = left;
+        mPaddingTop = top;
+        mPaddingRight = right;
+        mPaddingBottom = bottom;
+    }
+
+    public int getPaddingLeft() {
+        return mPaddingLeft;
+    }
+
+    public int getPaddingTop() {
+        return mPaddingTop;
+    }
+
+    public int getPaddingRight() {
+        return mPaddingRight;
+    }
+
+    public int getPaddingBottom() {
+        return mPaddingBottom;
+    }
+
+    public final void measure(int widthMeasureSpec, int heightMeasureSpec) {
+        onMeasure(widthMeasureSpec, heightMeasureSpec);
+    }
+
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), MeasureSpec.getSize(heightMeasureSpec));
+    }
+
+    protected final void setMeasuredDimension(int measuredWidth, int measuredHeight) {
+        mMeasuredWidth = measuredWidth;
+        mMeasuredHeight = measuredHeight;
+    }
+
+    public final int getMeasuredWidth() {
+        return mMeasuredWidth;
+    }
+
+    public final int getMeasuredHeight() {
+        return mMeasuredHeight;
+    }
+
+    public void layout(int l, int t, int r, int b) {
+        int oldWidth = mRight - mLeft;
+        int oldHeight = mBottom - mTop;
+        mLeft = l;
+        mTop = t;
+        mRight = r;
+        mBottom = b;
+        if (r - l != oldWidth || b - t != oldHeight) {
+            onSizeChanged(r - l, b - t, oldWidth, oldHeight);
+        }
+    }
+
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+    }
+
+    public final int getWidth() {
+        return mRight - mLeft;
+    }
+
+    public final int getHeight() {
+        return mBottom - mTop;
+    }
+
+    public void draw(Canvas canvas) {
+        onDraw(canvas);
+    }
+
+    protected void onDraw(Canvas canvas) {
+    }
+
+    public void requestLayout() {
+    }
+
+    public boolean isEnabled() {
+        return true;
+    }
+
+    public boolean onTouchEvent(MotionEvent event) {
+        return false;
+    }
+
+    public void playSoundEffect(int soundConstant) {
+    }
+
+    public void invalidate() {
+        mInvalidated.set(0, 0, getWidth(), getHeight());
+    }
+
+    public void invalidate(int l, int t, int r, int b) {
+        mInvalidated.union(l, t, r, b);
+    }
+
+    /**
+     * Get the area invalidated since the last call and reset it, for benchmarks to draw only that area.
+     */
+    public void takeInvalidatedRect(Rect rect) {
+        rect.set(mInvalidated);
+        mInvalidated.setEmpty();
+    }
+
+    public boolean post(Runnable action) {
+        return HANDLER.post(action);
+    }
+
+    public boolean removeCallbacks(Runnable action) {
+        return true;
+    }
+
+    public Handler getHandler() {
+        return HANDLER;
+    }
+
+    public void dispatchAttachedToWindow() {
+        mAttached = true;
+        onAttachedToWindow();
+    }
+
+    public void dispatchDetachedFromWindow() {
+        mAttached = false;
+        onDetachedFromWindow();
+    }
+
+    public boolean isAttachedToWindow() {
+        return mAttached;
+    }
+
+    protected void onAttachedToWindow() {
+    }
+
+    protected void onDetachedFromWindow() {
+    }
+}
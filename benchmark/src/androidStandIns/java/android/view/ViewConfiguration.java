@@ -0,0 +1,19 @@
+package android.view;
+
+import android.content.Context;
+
+/**
+ * Stand-in for benchmarks on a plain JVM, with the touch slop of a xxhdpi screen.
+ */
+public class ViewConfiguration {
+
+    private static final ViewConfiguration INSTANCE = new ViewConfiguration();
+
+    public static ViewConfiguration get(Context context) {
+        return INSTANCE;
+    }
+
+    public int getScaledTouchSlop() {
+        return 24;
+    }
+}
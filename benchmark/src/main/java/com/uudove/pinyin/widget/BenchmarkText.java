@@ -0,0 +1,57 @@
+package com.uudove.pinyin.widget;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.util.Pair;
+
+/**
+ * Realistic benchmark input: a textbook passage with hanzi, Chinese punctuation, latin words and numbers, repeated
+ * to the wanted size.
+ */
+final class BenchmarkText {
+
+    // Text-Pinyin pairs, latin, numbers and punctuation have no pinyin
+    private static final String[][] PASSAGE = {
+            {"春", "chūn"}, {"天", "tiān"}, {"来", "lái"}, {"了", "le"}, {"，", ""},
+            {"小", "xiǎo"}, {"明", "míng"}, {"和", "hé"}, {"同", "tóng"}, {"学", "xué"}, {"们", "men"},
+            {"去", "qù"}, {"公", "gōng"}, {"园", "yuán"}, {"放", "fàng"}, {"风", "fēng"}, {"筝", "zheng"}, {"。", ""},
+            {"他", "tā"}, {"用", "yòng"}, {"Android", ""}, {"手", "shǒu"}, {"机", "jī"}, {"拍", "pāi"},
+            {"了", "le"}, {"12", ""}, {"张", "zhāng"}, {"照", "zhào"}, {"片", "piàn"}, {"：", ""},
+            {"“", ""}, {"风", "fēng"}, {"筝", "zheng"}, {"飞", "fēi"}, {"得", "de"}, {"真", "zhēn"},
+            {"高", "gāo"}, {"啊", "a"}, {"！", ""}, {"”", ""},
+            {"老", "lǎo"}, {"师", "shī"}, {"说", "shuō"}, {"，", ""}, {"2016", ""}, {"年", "nián"},
+            {"的", "de"}, {"春", "chūn"}, {"天", "tiān"}, {"特", "tè"}, {"别", "bié"}, {"长", "cháng"},
+            {"（", ""}, {"cháng", ""}, {"）", ""}, {"。", ""},
+    };
+
+    private BenchmarkText() {
+    }
+
+    static List<Pair<String, String>> pinyinList(int itemCount) {
+        List<Pair<String, String>> list = new ArrayList<Pair<String, String>>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            String[] item = PASSAGE[i % PASSAGE.length];
+            list.add(Pair.create(item[0], item[1]));
+        }
+        return list;
+    }
+
+    // same items as pinyinList, with a hard break after every 4 passages like the paragraphs of a lesson
+    static List<Pair<String, String>> lessonList(int itemCount) {
+        List<Pair<String, String>> list = pinyinList(itemCount);
+        for (int i = PASSAGE.length * 4; i < list.size(); i += PASSAGE.length * 4) {
+            list.set(i - 1, Pair.create(list.get(i - 1).first + "\n", ""));
+        }
+        return list;
+    }
+
+    // same text as pinyinList, without pinyin
+    static String plainText(int itemCount) {
+        StringBuilder text = new StringBuilder(itemCount * 2);
+        for (int i = 0; i < itemCount; i++) {
+            text.append(PASSAGE[i % PASSAGE.length][0]);
+        }
+        return text.toString();
+    }
+}
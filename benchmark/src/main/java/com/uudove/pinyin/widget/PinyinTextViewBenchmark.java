@@ -0,0 +1,301 @@
+package com.uudove.pinyin.widget;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.util.Pair;
+import android.view.View.MeasureSpec;
+
+/**
+ * Benchmarks of setting, measuring and drawing {@link PinyinTextView} content on a 1080 px wide screen.<br/>
+ * Run with <code>./gradlew :benchmark:jmh</code>, which reports ops/s and, with the gc profiler, the allocation rate
+ * (gc.alloc.rate.norm is bytes per op).
+ *
+ * @author wangjingtao
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PinyinTextViewBenchmark {
+
+    private static final int SCREEN_WIDTH = 1080;
+    private static final int SCREEN_HEIGHT = 1920;
+
+    @Param({"100", "1000", "10000"})
+    public int itemCount;
+
+    private List<Pair<String, String>> mPinyinList;
+    private List<Pair<String, String>> mLessonList;
+    private PrecomputedPinyinText.Params mParams;
+
+    // the same items packed
+    private String mText;
+    private int[] mTextEnds;
+    private String mPinyin;
+    private int[] mPinyinEnds;
+
+    private PinyinTextView mSetView;
+    private PinyinTextView mMeasureView;
+    private PinyinTextView mPlainView;
+    private PinyinTextView mLabelView;
+    private PinyinTextView mDrawView;
+    private PinyinTextView mAutoSizeView;
+    private PinyinTextView mHighlightView;
+    private PinyinTextView mAtlasView;
+
+    private Canvas mCanvas = new Canvas();
+    private Rect mInvalidated = new Rect();
+    private int mHighlightItem;
+
+    // measured width alternates, so every measure breaks lines again
+    private int mWidthToggle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Context context = new Context();
+        mPinyinList = BenchmarkText.pinyinList(itemCount);
+        packPinyinList();
+        mLessonList = BenchmarkText.lessonList(itemCount);
+
+        mSetView = new PinyinTextView(context);
+
+        mMeasureView = new PinyinTextView(context);
+        mMeasureView.setPinyinText(mPinyinList);
+
+        mPlainView = new PinyinTextView(context);
+        mPlainView.setText(BenchmarkText.plainText(itemCount));
+
+        mLabelView = new PinyinTextView(context);
+        mLabelView.setText(BenchmarkText.plainText(10));
+
+        mDrawView = new PinyinTextView(context);
+        mDrawView.setPinyinText(mPinyinList);
+        mDrawView.measure(MeasureSpec.makeMeasureSpec(SCREEN_WIDTH, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        mDrawView.layout(0, 0, mDrawView.getMeasuredWidth(), mDrawView.getMeasuredHeight());
+
+        mAutoSizeView = new PinyinTextView(context);
+        mAutoSizeView.setPinyinText(mPinyinList);
+        mAutoSizeView.setAutoSizeTextConfiguration(4, 200, 2);
+
+        mAtlasView = new PinyinTextView(context);
+        mAtlasView.setPinyinText(mPinyinList);
+        mAtlasView.setPinyinAtlasEnabled(true);
+        mAtlasView.measure(MeasureSpec.makeMeasureSpec(SCREEN_WIDTH, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        mAtlasView.layout(0, 0, mAtlasView.getMeasuredWidth(), mAtlasView.getMeasuredHeight());
+
+        // one screen with the render cache, like a page of a reading app
+        mHighlightView = new PinyinTextView(context);
+        mHighlightView.setPinyinText(mPinyinList);
+        mHighlightView.setRenderCacheMaxBytes(SCREEN_WIDTH * SCREEN_HEIGHT * 4);
+        mHighlightView.setRenderCacheEnabled(true);
+        mHighlightView.measure(MeasureSpec.makeMeasureSpec(SCREEN_WIDTH, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(SCREEN_HEIGHT, MeasureSpec.EXACTLY));
+        mHighlightView.layout(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+
+        mParams = mSetView.getPinyinTextParams();
+    }
+
+    private void packPinyinList() {
+        StringBuilder text = new StringBuilder();
+        StringBuilder pinyin = new StringBuilder();
+        mTextEnds = new int[itemCount];
+        mPinyinEnds = new int[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            Pair<String, String> pair = mPinyinList.get(i);
+            text.append(pair.first);
+            pinyin.append(pair.second);
+            mTextEnds[i] = text.length();
+            mPinyinEnds[i] = pinyin.length();
+        }
+        mText = text.toString();
+        mPinyin = pinyin.toString();
+    }
+
+    private int nextWidthSpec() {
+        mWidthToggle ^= 1;
+        return MeasureSpec.makeMeasureSpec(SCREEN_WIDTH - mWidthToggle * 40, MeasureSpec.EXACTLY);
+    }
+
+    /**
+     * Measure & pack all items, widths mostly come from the width cache like in a running app.
+     */
+    @Benchmark
+    public int setPinyinText() {
+        mSetView.setPinyinText(mPinyinList);
+        return mSetView.getPinyinItemCount();
+    }
+
+    /**
+     * Same as {@link #setPinyinText()} with packed text, pinyin and item ends instead of a list of pairs.
+     */
+    @Benchmark
+    public int setPinyinTextPacked() {
+        mSetView.setPinyinText(mText, mTextEnds, mPinyin, mPinyinEnds);
+        return mSetView.getPinyinItemCount();
+    }
+
+    /**
+     * Measure and break into lines a lesson of paragraphs on the calling thread.
+     */
+    @Benchmark
+    public int precomputeLesson() {
+        return PrecomputedPinyinText.create(mLessonList, mParams, SCREEN_WIDTH).getItemCount();
+    }
+
+    /**
+     * Same as {@link #precomputeLesson()} on all cores, compare with it on a multi-core machine.
+     */
+    @Benchmark
+    public int precomputeLessonParallel() {
+        return PrecomputedPinyinText.create(mLessonList, mParams, SCREEN_WIDTH, null).getItemCount();
+    }
+
+    /**
+     * Break all items into lines for a new width.
+     */
+    @Benchmark
+    public int measurePinyinText() {
+        mMeasureView.measure(nextWidthSpec(), MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        return mMeasureView.getMeasuredHeight();
+    }
+
+    /**
+     * Release measurements like a detached view on low memory, then measure again like when it is attached again.
+     */
+    @Benchmark
+    public int remeasureAfterTrimMemory() {
+        mMeasureView.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        mMeasureView.measure(nextWidthSpec(), MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        return mMeasureView.getMeasuredHeight();
+    }
+
+    /**
+     * Lay out the same text without pinyin for a new width.
+     */
+    @Benchmark
+    public int measurePlainText() {
+        mPlainView.measure(nextWidthSpec(), MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        return mPlainView.getMeasuredHeight();
+    }
+
+    /**
+     * Measure the same text again for the same width, like a parent measuring its children twice.
+     */
+    @Benchmark
+    public int remeasurePlainText() {
+        mPlainView.measure(MeasureSpec.makeMeasureSpec(SCREEN_WIDTH, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        return mPlainView.getMeasuredHeight();
+    }
+
+    /**
+     * Measure a one line label of 10 chars with wrap_content for a new max width.
+     */
+    @Benchmark
+    public int measurePlainLabel() {
+        mLabelView.measure(MeasureSpec.makeMeasureSpec(SCREEN_WIDTH - mWidthToggle * 40, MeasureSpec.AT_MOST),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        mWidthToggle ^= 1;
+        return mLabelView.getMeasuredHeight();
+    }
+
+    /**
+     * Fit all items in one screen with auto size text, the height alternates so the chosen size changes.
+     */
+    @Benchmark
+    public int measureAutoSizeText() {
+        mAutoSizeView.measure(MeasureSpec.makeMeasureSpec(SCREEN_WIDTH, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(SCREEN_HEIGHT - mWidthToggle * SCREEN_HEIGHT / 3, MeasureSpec.EXACTLY));
+        mWidthToggle ^= 1;
+        return mAutoSizeView.getTextSize();
+    }
+
+    /**
+     * Draw one screen in the middle of the view, like a view in a scroll view.
+     */
+    @Benchmark
+    public double drawPinyinAndTextScreen() {
+        int top = Math.max(mDrawView.getHeight() / 2 - SCREEN_HEIGHT / 2, 0);
+        mCanvas.setClip(0, top, SCREEN_WIDTH, top + SCREEN_HEIGHT);
+        mDrawView.draw(mCanvas);
+        return mCanvas.checksum;
+    }
+
+    /**
+     * Same as {@link #drawPinyinAndTextScreen()} with pinyin drawn from the glyph atlas. The stand-in canvas doesn't
+     * rasterize, so this shows the cost of atlas lookups, not the rasterizing saved.
+     */
+    @Benchmark
+    public double drawPinyinAndTextScreenAtlas() {
+        int top = Math.max(mAtlasView.getHeight() / 2 - SCREEN_HEIGHT / 2, 0);
+        mCanvas.setClip(0, top, SCREEN_WIDTH, top + SCREEN_HEIGHT);
+        mAtlasView.draw(mCanvas);
+        return mCanvas.checksum;
+    }
+
+    /**
+     * Find the item at a position in the middle of the view, like tapping an item to pronounce it.
+     */
+    @Benchmark
+    public int getItemAt() {
+        mWidthToggle ^= 1;
+        return mDrawView.getItemAt(SCREEN_WIDTH / 2 - mWidthToggle * 40, mDrawView.getHeight() / 2);
+    }
+
+    /**
+     * Move the highlight to the next item of a 2k passage and draw what was invalidated, like reading along.
+     */
+    @Benchmark
+    public double highlightNextItem() {
+        return highlightNextItem(mDrawView);
+    }
+
+    /**
+     * Move the highlight to the next item on one screen and draw what was invalidated, with the render cache.
+     */
+    @Benchmark
+    public double highlightNextItemRenderCache() {
+        return highlightNextItem(mHighlightView);
+    }
+
+    private double highlightNextItem(PinyinTextView view) {
+        int item = mHighlightItem++ % Math.min(itemCount, 2000);
+        view.setHighlight(item, item + 1);
+        view.takeInvalidatedRect(mInvalidated);
+        mCanvas.setClip(mInvalidated.left, mInvalidated.top, mInvalidated.right, mInvalidated.bottom);
+        view.draw(mCanvas);
+        return mCanvas.checksum;
+    }
+
+    /**
+     * Draw the whole view.
+     */
+    @Benchmark
+    public double drawPinyinAndTextAll() {
+        mCanvas.setClip(0, 0, SCREEN_WIDTH, mDrawView.getHeight());
+        mDrawView.draw(mCanvas);
+        return mCanvas.checksum;
+    }
+}
@@ -0,0 +1,517 @@
+package com.uudove.pinyin.dict;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import android.content.Context;
+
+/**
+ * Phrase readings stored in a double-array trie, for resolving polyphones such as 行, 长 and 了 by their phrase.<br/>
+ * {@link #match(CharSequence, int)} finds the longest phrase at a position in one pass over the text, reading only
+ * int arrays. Like {@link PinyinDictionary}, the dictionary is memory mapped or kept in a direct buffer, and lookups
+ * don't allocate and are thread safe. Build a dictionary with {@link Builder}, which can also write it to a file.
+ * <pre>
+ * PhraseDictionary phrases = PhraseDictionary.load(context);
+ * pinyinTextView.setPinyinText(PinyinDictionary.load(context).convert("银行行长", phrases));
+ * </pre>
+ * A table of 42,987 phrases ships with the library as the asset {@link #ASSET}. It is generated by
+ * <code>tools/pinyin-table/BuildPhraseTable.java</code> from the phrase list next to it.
+ *
+ * @author wangjingtao
+ */
+public final class PhraseDictionary {
+
+    /**
+     * Magic number "PYP1" at the start of the file. The file is big endian:
+     * <pre>
+     * int    magic
+     * int    double array size (N)
+     * int    syllable count (S)
+     * int    syllable char count (C)
+     * int    reading short count (R)
+     * char[65536]  trie code of each char, 0 if no phrase contains it
+     * int[N]       base
+     * int[N]       check, -1 if the slot is free
+     * int[N]       value, reading offset of the phrase ending at the node, -1 if none
+     * int[S + 1]   start of each syllable in syllable chars
+     * char[C]      syllable chars, tone marked
+     * short[R]     readings: syllable count, then syllables
+     * </pre>
+     */
+    public static final int MAGIC = 0x50595031;
+
+    /**
+     * Path of the table shipped with the library, in the assets of the app.
+     */
+    public static final String ASSET = "pinyin/phrases.dat";
+
+    private static final int HEADER_SIZE = 5 * 4;
+    private static final int CHAR_COUNT = 65536;
+
+    private static final int ROOT = 0;
+
+    private final CharBuffer mCodes;
+    private final IntBuffer mBase;
+    private final IntBuffer mCheck;
+    private final IntBuffer mValue;
+    private final ShortBuffer mReadings;
+    private final int mSize;
+
+    private final String[] mSyllables;
+
+    private PhraseDictionary(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a phrase dictionary");
+        }
+        mSize = buffer.getInt(4);
+        int syllableCount = buffer.getInt(8);
+        int syllableCharCount = buffer.getInt(12);
+        int readingCount = buffer.getInt(16);
+
+        int offset = HEADER_SIZE;
+        mCodes = slice(buffer, offset).asCharBuffer();
+        offset += CHAR_COUNT * 2;
+        mBase = slice(buffer, offset).asIntBuffer();
+        offset += mSize * 4;
+        mCheck = slice(buffer, offset).asIntBuffer();
+        offset += mSize * 4;
+        mValue = slice(buffer, offset).asIntBuffer();
+        offset += mSize * 4;
+        int syllableStartOffset = offset;
+        offset += (syllableCount + 1) * 4;
+        int syllableCharOffset = offset;
+        offset += syllableCharCount * 2;
+        mReadings = slice(buffer, offset).asShortBuffer();
+        offset += readingCount * 2;
+        if (offset != buffer.capacity()) {
+            throw new IOException("Corrupted phrase dictionary");
+        }
+
+        mSyllables = new String[syllableCount];
+        for (int i = 0; i < syllableCount; i++) {
+            int start = buffer.getInt(syllableStartOffset + i * 4);
+            int end = buffer.getInt(syllableStartOffset + (i + 1) * 4);
+            char[] chars = new char[end - start];
+            for (int c = start; c < end; c++) {
+                chars[c - start] = buffer.getChar(syllableCharOffset + c * 2);
+            }
+            mSyllables[i] = new String(chars);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        return duplicate.slice();
+    }
+
+    /**
+     * Memory map a phrase dictionary file written by {@link Builder#writeTo(OutputStream)}.
+     *
+     * @param file the dictionary file.
+     *
+     * @return the dictionary.
+     *
+     * @throws IOException if the file can't be read or is not a phrase dictionary.
+     */
+    public static PhraseDictionary open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new PhraseDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close(); // the mapping stays valid
+        }
+    }
+
+    /**
+     * Read a phrase dictionary, e.g. from assets, into a direct buffer outside the Java heap.
+     *
+     * @param in the dictionary stream, not closed by this method.
+     *
+     * @return the dictionary.
+     *
+     * @throws IOException if the stream can't be read or is not a phrase dictionary.
+     */
+    public static PhraseDictionary load(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * 1024);
+        byte[] buffer = new byte[8 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        byte[] bytes = out.toByteArray();
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.clear();
+        return new PhraseDictionary(direct);
+    }
+
+    /**
+     * Read the table shipped with the library into a direct buffer, see {@link #load(InputStream)}. The table is
+     * 1.5 MB and takes a few milliseconds to read, call it once off the UI thread and keep the dictionary.
+     *
+     * @param context any context of the app.
+     *
+     * @return the dictionary.
+     *
+     * @throws IOException if the asset can't be read.
+     */
+    public static PhraseDictionary load(Context context) throws IOException {
+        InputStream in = context.getAssets().open(ASSET);
+        try {
+            return load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Find the longest phrase starting at a position.
+     *
+     * @param text  text to search.
+     * @param start position in text.
+     *
+     * @return reading of the phrase for {@link #getReadingLength(int)} and {@link #getPinyin(int, int)}, or -1 if
+     * no phrase starts at the position.
+     */
+    public int match(CharSequence text, int start) {
+        int length = text.length();
+        int node = ROOT;
+        int reading = -1;
+        for (int i = start; i < length; i++) {
+            int code = mCodes.get(text.charAt(i));
+            if (code == 0) {
+                break;
+            }
+            int next = mBase.get(node) + code;
+            if (next >= mSize || mCheck.get(next) != node) {
+                break;
+            }
+            node = next;
+            int value = mValue.get(node);
+            if (value >= 0) {
+                reading = value;
+            }
+        }
+        return reading;
+    }
+
+    /**
+     * @param reading reading returned by {@link #match(CharSequence, int)}.
+     *
+     * @return number of syllables of the phrase, which is its number of code points.
+     */
+    public int getReadingLength(int reading) {
+        return mReadings.get(reading);
+    }
+
+    /**
+     * @param reading reading returned by {@link #match(CharSequence, int)}.
+     * @param index   index of the code point in the phrase.
+     *
+     * @return tone marked pinyin of the code point.
+     */
+    public String getPinyin(int reading, int index) {
+        return mSyllables[mReadings.get(reading + 1 + index)];
+    }
+
+    /**
+     * Builds a {@link PhraseDictionary}.
+     */
+    public static final class Builder {
+
+        private final TreeMap<String, String[]> mPhrases = new TreeMap<String, String[]>();
+
+        /**
+         * Add a phrase. A phrase added again replaces the old one.
+         *
+         * @param phrase the phrase.
+         * @param pinyin tone marked pinyin, one for each code point of the phrase.
+         *
+         * @return this builder.
+         */
+        public Builder add(String phrase, String... pinyin) {
+            if (phrase.length() == 0 || phrase.codePointCount(0, phrase.length()) != pinyin.length) {
+                throw new IllegalArgumentException("Need one pinyin for each code point of " + phrase);
+            }
+            mPhrases.put(phrase, pinyin.clone());
+            return this;
+        }
+
+        /**
+         * Build the dictionary in memory.
+         *
+         * @return the dictionary.
+         */
+        public PhraseDictionary build() {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                writeTo(out);
+                return new PhraseDictionary(ByteBuffer.wrap(out.toByteArray()));
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // not thrown by ByteArrayOutputStream
+            }
+        }
+
+        /**
+         * Write the dictionary, to be read by {@link PhraseDictionary#open(File)} or
+         * {@link PhraseDictionary#load(InputStream)}.
+         *
+         * @param out stream to write to, not closed by this method.
+         *
+         * @throws IOException if writing fails.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            String[] keys = mPhrases.keySet().toArray(new String[mPhrases.size()]);
+
+            // dense trie codes in char order, so sorted keys are sorted by code too
+            char[] codes = new char[CHAR_COUNT];
+            boolean[] used = new boolean[CHAR_COUNT];
+            for (String key : keys) {
+                for (int i = 0; i < key.length(); i++) {
+                    used[key.charAt(i)] = true;
+                }
+            }
+            int codeCount = 0;
+            for (int c = 0; c < CHAR_COUNT; c++) {
+                if (used[c]) {
+                    codes[c] = (char) ++codeCount;
+                }
+            }
+
+            // syllables & readings
+            Map<String, Integer> syllableIds = new HashMap<String, Integer>();
+            List<String> syllables = new ArrayList<String>();
+            ShortList readings = new ShortList();
+            int[] readingOffsets = new int[keys.length];
+            for (int k = 0; k < keys.length; k++) {
+                String[] pinyin = mPhrases.get(keys[k]);
+                readingOffsets[k] = readings.size;
+                readings.add(pinyin.length);
+                for (String syllable : pinyin) {
+                    Integer id = syllableIds.get(syllable);
+                    if (id == null) {
+                        id = syllables.size();
+                        syllableIds.put(syllable, id);
+                        syllables.add(syllable);
+                    }
+                    readings.add(id);
+                }
+            }
+            if (syllables.size() > Short.MAX_VALUE) {
+                throw new IOException("Too many syllables");
+            }
+
+            DoubleArray array = new DoubleArray(keys, codes, readingOffsets);
+
+            DataOutputStream data = new DataOutputStream(out);
+            int syllableCharCount = 0;
+            for (String syllable : syllables) {
+                syllableCharCount += syllable.length();
+            }
+            data.writeInt(MAGIC);
+            data.writeInt(array.size);
+            data.writeInt(syllables.size());
+            data.writeInt(syllableCharCount);
+            data.writeInt(readings.size);
+            for (char code : codes) {
+                data.writeChar(code);
+            }
+            for (int i = 0; i < array.size; i++) {
+                data.writeInt(array.base[i]);
+            }
+            for (int i = 0; i < array.size; i++) {
+                data.writeInt(array.check[i]);
+            }
+            for (int i = 0; i < array.size; i++) {
+                data.writeInt(array.value[i]);
+            }
+            int start = 0;
+            data.writeInt(start);
+            for (String syllable : syllables) {
+                start += syllable.length();
+                data.writeInt(start);
+            }
+            for (String syllable : syllables) {
+                data.writeChars(syllable);
+            }
+            for (int i = 0; i < readings.size; i++) {
+                data.writeShort(readings.data[i]);
+            }
+            data.flush();
+        }
+    }
+
+    // builds base & check arrays from sorted keys, one sibling set at a time
+    private static final class DoubleArray {
+        final String[] keys;
+        final char[] codes;
+        final int[] readingOffsets;
+
+        int[] base = new int[1024];
+        int[] check = new int[1024];
+        int[] value = new int[1024];
+        int size = 1;
+
+        // union-find of free slots: free[i] == i if slot i is free, else a later slot to look at
+        int[] free = new int[1024];
+
+        DoubleArray(String[] keys, char[] codes, int[] readingOffsets) {
+            this.keys = keys;
+            this.codes = codes;
+            this.readingOffsets = readingOffsets;
+
+            Arrays.fill(check, -1);
+            Arrays.fill(value, -1);
+            for (int i = 0; i < free.length; i++) {
+                free[i] = i;
+            }
+            use(ROOT, ROOT);
+            if (keys.length > 0) {
+                insert(ROOT, 0, 0, keys.length);
+            }
+        }
+
+        // keys [begin, end) share the first depth chars, which lead to node
+        private void insert(int node, int depth, int begin, int end) {
+            // a key ending here is first since keys are sorted
+            if (keys[begin].length() == depth) {
+                value[node] = readingOffsets[begin];
+                begin++;
+            }
+            if (begin == end) {
+                return;
+            }
+
+            // child codes, in ascending order
+            IntList children = new IntList();
+            IntList childBegins = new IntList();
+            for (int k = begin; k < end; k++) {
+                int code = codes[keys[k].charAt(depth)];
+                if (children.size == 0 || children.data[children.size - 1] != code) {
+                    children.add(code);
+                    childBegins.add(k);
+                }
+            }
+            childBegins.add(end);
+
+            int b = findBase(children);
+            base[node] = b;
+            for (int i = 0; i < children.size; i++) {
+                use(b + children.data[i], node);
+            }
+
+            for (int i = 0; i < children.size; i++) {
+                insert(b + children.data[i], depth + 1, childBegins.data[i], childBegins.data[i + 1]);
+            }
+        }
+
+        private int findBase(IntList children) {
+            int first = children.data[0];
+            int last = children.data[children.size - 1];
+            int position = nextFree(first + 1);
+            while (true) {
+                ensureSize(position + last - first + 1);
+                int b = position - first;
+                boolean free = true;
+                for (int i = 1; i < children.size; i++) {
+                    if (check[b + children.data[i]] != -1) {
+                        free = false;
+                        break;
+                    }
+                }
+                if (free) {
+                    return b;
+                }
+                position = nextFree(position + 1);
+            }
+        }
+
+        private void use(int position, int parent) {
+            check[position] = parent;
+            free[position] = position + 1;
+        }
+
+        // first free slot from position, skipping used runs by path halving
+        private int nextFree(int position) {
+            ensureSize(position + 1);
+            while (free[position] != position) {
+                ensureSize(free[position] + 1);
+                free[position] = free[free[position]];
+                position = free[position];
+                ensureSize(position + 1);
+            }
+            return position;
+        }
+
+        private void ensureSize(int newSize) {
+            if (newSize > base.length) {
+                int oldLength = base.length;
+                int capacity = Math.max(newSize, oldLength * 2);
+                base = grow(base, capacity);
+                check = grow(check, capacity);
+                value = grow(value, capacity);
+                free = grow(free, capacity);
+                Arrays.fill(check, oldLength, capacity, -1);
+                Arrays.fill(value, oldLength, capacity, -1);
+                for (int i = oldLength; i < capacity; i++) {
+                    free[i] = i;
+                }
+            }
+            if (newSize > size) {
+                size = newSize;
+            }
+        }
+    }
+
+    private static final class IntList {
+        int[] data = new int[8];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) {
+                data = grow(data, size * 2);
+            }
+            data[size++] = v;
+        }
+    }
+
+    private static final class ShortList {
+        short[] data = new short[1024];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) {
+                short[] grown = new short[size * 2];
+                System.arraycopy(data, 0, grown, 0, size);
+                data = grown;
+            }
+            data[size++] = (short) v;
+        }
+    }
+
+    // Arrays.copyOf needs API 9
+    private static int[] grow(int[] array, int capacity) {
+        int[] grown = new int[capacity];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
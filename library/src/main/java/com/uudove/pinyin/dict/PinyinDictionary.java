@@ -0,0 +1,318 @@
+package com.uudove.pinyin.dict;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.Context;
+import android.util.Pair;
+
+/**
+ * Hanzi to pinyin converter backed by a compact binary table indexed by code point.<br/>
+ * The table is either memory mapped ({@link #open(File)}) or read into a direct buffer ({@link #load(InputStream)}),
+ * so it takes almost no Java heap: only one String per distinct syllable (about 1,500) is created. Lookups don't
+ * allocate and are thread safe.
+ * <pre>
+ * PinyinDictionary dictionary = PinyinDictionary.load(context);
+ * pinyinTextView.setPinyinText(dictionary.convert("很高兴认识你！"));
+ * </pre>
+ * A table of 26,665 hanzi ships with the library as the asset {@link #ASSET}. It is generated by
+ * <code>tools/pinyin-table/build_table.py</code> from the reading list next to it, and other tables, e.g. from the
+ * Unihan database, can be opened the same way. See {@link #MAGIC} for the format. Polyphones are read by phrase with a {@link PhraseDictionary}, see
+ * {@link #convert(CharSequence, PhraseDictionary)}.
+ *
+ * @author wangjingtao
+ */
+public final class PinyinDictionary {
+
+    /**
+     * Magic number "PYT1" at the start of the table. The table is big endian:
+     * <pre>
+     * int    magic
+     * int    first code point
+     * int    last code point
+     * int    syllable count (S)
+     * int    syllable char count (C)
+     * int    polyphone short count (P)
+     * int[S + 1]   start of each syllable in syllable chars
+     * char[C]      syllable chars, tone marked
+     * short[last - first + 1]  index: 0 no reading, &gt; 0 syllable + 1, &lt; 0 polyphone offset | 0x8000
+     * short[P]     polyphones: reading count, then syllables
+     * </pre>
+     */
+    public static final int MAGIC = 0x50595431;
+
+    /**
+     * Path of the table shipped with the library, in the assets of the app.
+     */
+    public static final String ASSET = "pinyin/pinyin.dat";
+
+    private static final int HEADER_SIZE = 6 * 4;
+
+    private final ByteBuffer mBuffer;
+
+    private final int mFirstCodePoint;
+    private final int mLastCodePoint;
+
+    private final String[] mSyllables;
+
+    // offset of index & polyphones in mBuffer
+    private final int mIndexOffset;
+    private final int mPolyphoneOffset;
+
+    private PinyinDictionary(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a pinyin table");
+        }
+        mBuffer = buffer;
+        mFirstCodePoint = buffer.getInt(4);
+        mLastCodePoint = buffer.getInt(8);
+        int syllableCount = buffer.getInt(12);
+        int syllableCharCount = buffer.getInt(16);
+        int polyphoneCount = buffer.getInt(20);
+
+        int syllableStartOffset = HEADER_SIZE;
+        int syllableCharOffset = syllableStartOffset + (syllableCount + 1) * 4;
+        mIndexOffset = syllableCharOffset + syllableCharCount * 2;
+        mPolyphoneOffset = mIndexOffset + (mLastCodePoint - mFirstCodePoint + 1) * 2;
+        if (mPolyphoneOffset + polyphoneCount * 2 != buffer.capacity()) {
+            throw new IOException("Corrupted pinyin table");
+        }
+
+        // the only objects created per entry, one for each distinct syllable
+        mSyllables = new String[syllableCount];
+        char[] chars = new char[64];
+        for (int i = 0; i < syllableCount; i++) {
+            int start = buffer.getInt(syllableStartOffset + i * 4);
+            int end = buffer.getInt(syllableStartOffset + (i + 1) * 4);
+            if (end - start > chars.length) {
+                chars = new char[end - start];
+            }
+            for (int c = start; c < end; c++) {
+                chars[c - start] = buffer.getChar(syllableCharOffset + c * 2);
+            }
+            mSyllables[i] = new String(chars, 0, end - start);
+        }
+    }
+
+    /**
+     * Memory map a pinyin table file. The file must not change while the dictionary is used.
+     *
+     * @param file the table file.
+     *
+     * @return the dictionary.
+     *
+     * @throws IOException if the file can't be read or is not a pinyin table.
+     */
+    public static PinyinDictionary open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new PinyinDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close(); // the mapping stays valid
+        }
+    }
+
+    /**
+     * Read a pinyin table, e.g. from assets, into a direct buffer outside the Java heap.
+     *
+     * @param in the table stream, not closed by this method.
+     *
+     * @return the dictionary.
+     *
+     * @throws IOException if the stream can't be read or is not a pinyin table.
+     */
+    public static PinyinDictionary load(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        byte[] buffer = new byte[8 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        byte[] bytes = out.toByteArray();
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.clear();
+        return new PinyinDictionary(direct);
+    }
+
+    /**
+     * Read the table shipped with the library into a direct buffer, see {@link #load(InputStream)}. It takes a few
+     * milliseconds, call it once off the UI thread and keep the dictionary.
+     *
+     * @param context any context of the app.
+     *
+     * @return the dictionary.
+     *
+     * @throws IOException if the asset can't be read.
+     */
+    public static PinyinDictionary load(Context context) throws IOException {
+        InputStream in = context.getAssets().open(ASSET);
+        try {
+            return load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Get the number of readings of a code point.
+     *
+     * @param codePoint the code point.
+     *
+     * @return number of readings, 0 if the code point is not in the table.
+     */
+    public int getReadingCount(int codePoint) {
+        short entry = getEntry(codePoint);
+        if (entry == 0) {
+            return 0;
+        }
+        if (entry > 0) {
+            return 1;
+        }
+        return mBuffer.getShort(mPolyphoneOffset + (entry & 0x7fff) * 2);
+    }
+
+    /**
+     * Get the most common reading of a code point.
+     *
+     * @param codePoint the code point.
+     *
+     * @return tone marked pinyin, null if the code point is not in the table.
+     */
+    public String getPinyin(int codePoint) {
+        return getPinyin(codePoint, 0);
+    }
+
+    /**
+     * Get a reading of a code point.
+     *
+     * @param codePoint the code point.
+     * @param index     index of the reading, 0 is the most common one.
+     *
+     * @return tone marked pinyin, null if the code point or the reading is not in the table.
+     */
+    public String getPinyin(int codePoint, int index) {
+        int syllable = getSyllable(codePoint, index);
+        return syllable < 0 ? null : mSyllables[syllable];
+    }
+
+    /**
+     * Get a reading of a code point as a syllable id, which is stable for one table.
+     *
+     * @param codePoint the code point.
+     * @param index     index of the reading, 0 is the most common one.
+     *
+     * @return syllable id, -1 if the code point or the reading is not in the table.
+     */
+    public int getSyllable(int codePoint, int index) {
+        short entry = getEntry(codePoint);
+        if (entry == 0 || index < 0) {
+            return -1;
+        }
+        if (entry > 0) {
+            return index == 0 ? entry - 1 : -1;
+        }
+        int offset = mPolyphoneOffset + (entry & 0x7fff) * 2;
+        if (index >= mBuffer.getShort(offset)) {
+            return -1;
+        }
+        return mBuffer.getShort(offset + (index + 1) * 2);
+    }
+
+    /**
+     * @return the syllable with the id.
+     */
+    public String getSyllable(int syllable) {
+        return mSyllables[syllable];
+    }
+
+    /**
+     * @return number of distinct syllables.
+     */
+    public int getSyllableCount() {
+        return mSyllables.length;
+    }
+
+    /**
+     * Convert text to Text-Pinyin pairs for {@link com.uudove.pinyin.widget.PinyinTextView#setPinyinText(List)}.
+     * Each hanzi is an item with its most common reading. A run of letters or digits is one item without pinyin, and
+     * every other char is an item without pinyin.
+     *
+     * @param text text to convert.
+     *
+     * @return Text-Pinyin pairs.
+     */
+    public List<Pair<String, String>> convert(CharSequence text) {
+        return convert(text, null);
+    }
+
+    /**
+     * Convert text to Text-Pinyin pairs like {@link #convert(CharSequence)}, reading polyphones by phrase.<br/>
+     * The text is segmented in one pass: at each position the longest phrase of the phrase dictionary is taken, and
+     * hanzi not in any phrase get their most common reading.
+     *
+     * @param text    text to convert.
+     * @param phrases phrase dictionary, or null.
+     *
+     * @return Text-Pinyin pairs, one for each hanzi.
+     */
+    public List<Pair<String, String>> convert(CharSequence text, PhraseDictionary phrases) {
+        List<Pair<String, String>> result = new ArrayList<Pair<String, String>>(text.length());
+        String string = text.toString();
+        int length = string.length();
+        int i = 0;
+        while (i < length) {
+            int reading = phrases == null ? -1 : phrases.match(string, i);
+            if (reading >= 0) {
+                int count = phrases.getReadingLength(reading);
+                for (int c = 0; c < count; c++) {
+                    int end = i + Character.charCount(string.codePointAt(i));
+                    result.add(Pair.create(string.substring(i, end), phrases.getPinyin(reading, c)));
+                    i = end;
+                }
+                continue;
+            }
+
+            int codePoint = string.codePointAt(i);
+            int end = i + Character.charCount(codePoint);
+
+            String pinyin = getPinyin(codePoint);
+            if (pinyin == null) {
+                pinyin = "";
+                if (isWordChar(codePoint)) { // keep latin words & numbers together
+                    while (end < length) {
+                        int next = string.codePointAt(end);
+                        if (!isWordChar(next) || getEntry(next) != 0) {
+                            break;
+                        }
+                        end += Character.charCount(next);
+                    }
+                }
+            }
+
+            result.add(Pair.create(string.substring(i, end), pinyin));
+            i = end;
+        }
+        return result;
+    }
+
+    private static boolean isWordChar(int codePoint) {
+        return codePoint < 0x3000 && Character.isLetterOrDigit(codePoint);
+    }
+
+    private short getEntry(int codePoint) {
+        if (codePoint < mFirstCodePoint || codePoint > mLastCodePoint) {
+            return 0;
+        }
+        return mBuffer.getShort(mIndexOffset + (codePoint - mFirstCodePoint) * 2);
+    }
+}
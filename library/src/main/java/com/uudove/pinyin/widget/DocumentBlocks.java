@@ -0,0 +1,85 @@
+package com.uudove.pinyin.widget;
+
+/**
+ * Splits the items of a long document into blocks for {@link PinyinDocumentView}.<br/>
+ * A block ends at the first hard break after the min block size. A paragraph reaching twice the min size without a
+ * hard break is split at the start of a line, so the blocks still look like one text, and memory stays bounded
+ * whatever the paragraph length. Lines are only known once the width is, before that such a paragraph is split at
+ * the item, which adds a line break there until the blocks are split again with the width.
+ *
+ * @author wangjingtao
+ */
+final class DocumentBlocks {
+
+    /**
+     * The items of a document, as needed to split it.
+     */
+    interface Document {
+
+        /**
+         * @return number of items.
+         */
+        int getItemCount();
+
+        /**
+         * @return whether the text of the item ends with '\n'.
+         */
+        boolean isHardBreak(int item);
+
+        /**
+         * Break items [start, end) into lines.
+         *
+         * @return first item of the last line, start if all items are on one line or the width is not known yet.
+         */
+        int getLastLineStart(int start, int end);
+    }
+
+    private DocumentBlocks() {
+    }
+
+    /**
+     * Split a document into blocks.
+     *
+     * @param blockSize min number of items in a block, a block has at most twice as many.
+     *
+     * @return first item of each block, then the item count. Only the item count if there are no items.
+     */
+    static int[] split(Document document, int blockSize) {
+        int count = document.getItemCount();
+        int maxBlockSize = blockSize * 2;
+        int[] starts = new int[count / blockSize + 2];
+        int blockCount = 0;
+        int blockStart = 0;
+
+        for (int i = 0; i < count; i++) {
+            int end = -1;
+            if (i + 1 - blockStart >= blockSize && document.isHardBreak(i)) {
+                end = i + 1;
+            } else if (i + 1 - blockStart >= maxBlockSize) {
+                // the last line may go on after item i, the block ends before it
+                end = document.getLastLineStart(blockStart, i + 1);
+                if (end <= blockStart) {
+                    end = i + 1;
+                }
+            }
+            if (end > blockStart && end < count) {
+                if (blockCount + 3 > starts.length) { // room for this block, the last block and the end
+                    int[] newStarts = new int[starts.length * 2];
+                    System.arraycopy(starts, 0, newStarts, 0, starts.length);
+                    starts = newStarts;
+                }
+                starts[blockCount++] = blockStart;
+                blockStart = end;
+                i = end - 1; // items of the last line go on in the next block
+            }
+        }
+        if (count > 0) {
+            starts[blockCount++] = blockStart;
+        }
+        starts[blockCount] = count;
+
+        int[] result = new int[blockCount + 1];
+        System.arraycopy(starts, 0, result, 0, blockCount + 1);
+        return result;
+    }
+}
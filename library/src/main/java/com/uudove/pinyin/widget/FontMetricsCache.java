@@ -0,0 +1,95 @@
+package com.uudove.pinyin.widget;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+
+/**
+ * Font ascent and descent of each typeface and text size used, so line heights don't depend on which glyphs the text
+ * has and cost nothing to get again. Thread safe.
+ *
+ * @author wangjingtao
+ */
+final class FontMetricsCache {
+
+    private static final int MAX_SIZE = 64;
+
+    // key: typeface & text size, value: ascent and descent in pixels, positive
+    private static final LinkedHashMap<Key, int[]> sMetricsMap = new LinkedHashMap<Key, int[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private static final Paint.FontMetricsInt sMetrics = new Paint.FontMetricsInt();
+
+    private FontMetricsCache() {
+    }
+
+    /**
+     * Get the height of the font above the baseline.
+     *
+     * @param typeface typeface, null for the default one.
+     * @param textSize text size in pixels.
+     * @param paint    paint to measure with if not cached, its text size and typeface are changed.
+     *
+     * @return ascent in pixels, positive.
+     */
+    static synchronized int getAscent(Typeface typeface, int textSize, TextPaint paint) {
+        return getMetrics(typeface, textSize, paint)[0];
+    }
+
+    /**
+     * Get the depth of the font below the baseline, where descenders like g, y and p end.
+     *
+     * @param typeface typeface, null for the default one.
+     * @param textSize text size in pixels.
+     * @param paint    paint to measure with if not cached, its text size and typeface are changed.
+     *
+     * @return descent in pixels, positive.
+     */
+    static synchronized int getDescent(Typeface typeface, int textSize, TextPaint paint) {
+        return getMetrics(typeface, textSize, paint)[1];
+    }
+
+    private static int[] getMetrics(Typeface typeface, int textSize, TextPaint paint) {
+        Key key = new Key(typeface, textSize);
+        int[] metrics = sMetricsMap.get(key);
+        if (metrics == null) {
+            paint.setTypeface(typeface);
+            paint.setTextSize(textSize);
+            paint.getFontMetricsInt(sMetrics);
+            metrics = new int[]{-sMetrics.ascent, sMetrics.descent};
+            sMetricsMap.put(key, metrics);
+        }
+        return metrics;
+    }
+
+    private static final class Key {
+        private final Typeface mTypeface;
+        private final int mTextSize;
+
+        Key(Typeface typeface, int textSize) {
+            mTypeface = typeface;
+            mTextSize = textSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mTypeface == key.mTypeface && mTextSize == key.mTextSize;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(mTypeface) + mTextSize;
+        }
+    }
+}
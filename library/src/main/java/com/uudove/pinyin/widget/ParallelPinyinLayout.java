@@ -0,0 +1,174 @@
+package com.uudove.pinyin.widget;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.graphics.Paint;
+import android.text.TextPaint;
+
+/**
+ * Measures items and breaks them into lines on several threads, for long texts.<br/>
+ * Items are measured in chunks. Paragraphs (items up to a hard break) are broken into lines independently, so they
+ * are grouped into parts broken on different threads, then the parts are joined. The result is the same as measuring
+ * and breaking lines on one thread.<br/>
+ * The calling thread works on chunks too and waits for the rest, so nothing is stuck if the executor is busy.
+ *
+ * @author wangjingtao
+ */
+final class ParallelPinyinLayout {
+
+    // items measured by one task
+    private static final int MEASURE_CHUNK_SIZE = 512;
+
+    // min items broken into lines by one task, a task takes whole paragraphs
+    private static final int LAYOUT_CHUNK_SIZE = 1024;
+
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    private static Executor sExecutor;
+
+    private ParallelPinyinLayout() {
+    }
+
+    /**
+     * Get the executor shared by all views, with a thread per core besides the calling thread. Threads keep the
+     * default priority since the main thread may wait for them.
+     */
+    static synchronized Executor getSharedExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(Math.max(PARALLELISM - 1, 1), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "PinyinTextView-layout-" + mCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Measure text & pinyin width of every item, see
+     * {@link PrecomputedPinyinText#measureWidths(PrecomputedPinyinText.Params, int, int, char[], int[], char[],
+     * int[], int[], int[], TextPaint)}.
+     */
+    static void measureWidths(final PrecomputedPinyinText.Params params, final int count, final char[] text,
+                              final int[] textStarts, final char[] pinyin, final int[] pinyinStarts,
+                              final int[] textWidths, final int[] pinyinWidths, Executor executor) {
+        // short texts in one chunk on the calling thread
+        final int chunkCount = count < LAYOUT_CHUNK_SIZE ? 1 : (count + MEASURE_CHUNK_SIZE - 1) / MEASURE_CHUNK_SIZE;
+        run(executor, chunkCount, new Task() {
+            @Override
+            public void run(int chunk) {
+                // paints are not thread safe, one per chunk
+                TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.LINEAR_TEXT_FLAG);
+                int start = chunk * MEASURE_CHUNK_SIZE;
+                int end = chunk == chunkCount - 1 ? count : start + MEASURE_CHUNK_SIZE;
+                PrecomputedPinyinText.measureWidths(params, start, end, text, textStarts, pinyin, pinyinStarts,
+                        textWidths, pinyinWidths, paint);
+            }
+        });
+    }
+
+    /**
+     * Break items into lines, see {@link PinyinLayout#create(int, int[], int[], int[], int, int, int, int, int,
+     * int)}. Without enough paragraphs to split, lines are broken on the calling thread.
+     */
+    static PinyinLayout create(final int itemCount, final int[] textWidths, final int[] pinyinWidths,
+                               final int[] hardBreaks, final int textHeight, final int pinyinHeight,
+                               final int pinyinTextSpacing, final int lineSpacing, final int itemSpacing,
+                               final int availableWidth, Executor executor) {
+        // parts start at item 0 and after hard breaks, with at least LAYOUT_CHUNK_SIZE items
+        final int[] partStarts = new int[hardBreaks.length + 2];
+        int partCount = 1;
+        for (int hardBreak : hardBreaks) {
+            int next = hardBreak + 1;
+            if (next - partStarts[partCount - 1] >= LAYOUT_CHUNK_SIZE && itemCount - next >= LAYOUT_CHUNK_SIZE) {
+                partStarts[partCount++] = next;
+            }
+        }
+        partStarts[partCount] = itemCount;
+
+        if (partCount == 1) {
+            return PinyinLayout.create(itemCount, textWidths, pinyinWidths, hardBreaks, textHeight, pinyinHeight,
+                    pinyinTextSpacing, lineSpacing, itemSpacing, availableWidth);
+        }
+
+        final int[] itemLeft = new int[itemCount];
+        final PinyinLayout[] parts = new PinyinLayout[partCount];
+        run(executor, partCount, new Task() {
+            @Override
+            public void run(int part) {
+                parts[part] = PinyinLayout.createPart(partStarts[part], partStarts[part + 1], itemCount, textWidths,
+                        pinyinWidths, hardBreaks, textHeight, pinyinHeight, pinyinTextSpacing, lineSpacing,
+                        itemSpacing, availableWidth, itemLeft);
+            }
+        });
+        return PinyinLayout.join(parts, itemCount);
+    }
+
+    // run tasks [0, taskCount) on the executor and the calling thread, returns when all are done
+    private static void run(Executor executor, final int taskCount, final Task task) {
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(taskCount);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int index;
+                while ((index = next.getAndIncrement()) < taskCount) {
+                    try {
+                        task.run(index);
+                    } catch (Throwable t) {
+                        error.compareAndSet(null, t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+        };
+
+        int workerCount = Math.min(taskCount, PARALLELISM) - 1;
+        for (int i = 0; i < workerCount; i++) {
+            try {
+                executor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                break; // the calling thread does the rest
+            }
+        }
+        worker.run();
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable t = error.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+    }
+
+    private interface Task {
+        void run(int index);
+    }
+}
@@ -0,0 +1,344 @@
+package com.uudove.pinyin.widget;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.Pair;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Displays a long pinyin document, such as a textbook chapter.<br/>
+ * The document is split into blocks of whole paragraphs, and each block is shown by a recycled
+ * {@link PinyinTextView}, so only visible blocks are measured and memory doesn't grow with the document. Blocks end
+ * at hard breaks (items whose text ends with '\n') and are spaced like lines, so the document looks the same as in
+ * one view. A paragraph longer than twice the block size is split at a line start found by measuring its items once
+ * the width is known, see {@link #setBlockSize(int)}. Attributes are the same as {@link PinyinTextView}.<br/>
+ * Needs {@code com.android.support:recyclerview-v7}, which the library doesn't bring in: add it to the dependencies
+ * of the app to use this view.
+ * <pre>
+ * &lt;com.uudove.pinyin.widget.PinyinDocumentView
+ * android:id="@+id/pinyin_document_view"
+ * android:layout_width="match_parent"
+ * android:layout_height="match_parent"
+ * android:horizontalSpacing="10dp"
+ * android:verticalSpacing="10dp"
+ * android:textColor="#ff0000"
+ * android:textColorHint="#000000"
+ * android:textSize="20sp"/&gt;
+ * </pre>
+ *
+ * @author wangjingtao
+ */
+public class PinyinDocumentView extends RecyclerView {
+
+    /**
+     * Default min number of items in a block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 200;
+
+    private int mTextSize;
+    private int mPinyinTextSize; // 0 if not set
+    private int mTextColor;
+    private int mPinyinTextColor;
+    private int mHorizontalSpacing;
+    private int mVerticalSpacing;
+
+    // increased when style changes, bound views are styled again only if their version is older
+    private int mStyleVersion;
+
+    private int mBlockSize = DEFAULT_BLOCK_SIZE;
+
+    private List<Pair<String, String>> mPinyinList;
+
+    // first item of each block, mBlockStarts[mBlockCount] is the item count
+    private int[] mBlockStarts = new int[1];
+    private int mBlockCount;
+
+    // items of the document for DocumentBlocks, long paragraphs are split at lines of the current width
+    private final DocumentBlocks.Document mDocument = new DocumentBlocks.Document() {
+        @Override
+        public int getItemCount() {
+            return mPinyinList.size();
+        }
+
+        @Override
+        public boolean isHardBreak(int item) {
+            String text = mPinyinList.get(item).first;
+            return text != null && text.length() > 0 && text.charAt(text.length() - 1) == '\n';
+        }
+
+        @Override
+        public int getLastLineStart(int start, int end) {
+            int width = getWidth() - getPaddingLeft() - getPaddingRight();
+            if (width <= 0) {
+                return start;
+            }
+            int pinyinTextSize = mPinyinTextSize > 0 ? mPinyinTextSize
+                    : (int) (mTextSize * PinyinTextView.PINYIN_TEXT_SIZE_RADIO);
+            PrecomputedPinyinText.Params params = new PrecomputedPinyinText.Params(mTextSize, pinyinTextSize,
+                    mHorizontalSpacing, mVerticalSpacing, null);
+            PinyinLayout layout = PrecomputedPinyinText.create(mPinyinList.subList(start, end), params, width)
+                    .getLayout();
+            return start + layout.getLineStart(layout.getLineCount() - 1);
+        }
+    };
+
+    // splits blocks again at lines of the new width, posted since the adapter can't change during layout
+    private final Runnable mResplit = new Runnable() {
+        @Override
+        public void run() {
+            if (mPinyinList != null) {
+                int[] oldStarts = mBlockStarts;
+                splitBlocks();
+                if (!Arrays.equals(oldStarts, mBlockStarts)) {
+                    mAdapter.notifyDataSetChanged();
+                }
+            }
+        }
+    };
+
+    private final BlockAdapter mAdapter = new BlockAdapter();
+
+    // measures the text ascent, for the descent below the last line of a block
+    private final TextPaint mPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.LINEAR_TEXT_FLAG);
+
+    public PinyinDocumentView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        init(context, attrs);
+    }
+
+    public PinyinDocumentView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(context, attrs);
+    }
+
+    public PinyinDocumentView(Context context) {
+        super(context);
+        init(context, null);
+    }
+
+    private void init(Context context, AttributeSet attrs) {
+        DisplayMetrics dm = context.getResources().getDisplayMetrics();
+
+        // same defaults as PinyinTextView
+        mTextSize = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 14, dm);
+        mTextColor = 0xff333333;
+        mPinyinTextColor = 0xff999999;
+        mHorizontalSpacing = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 5, dm);
+        mVerticalSpacing = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 5, dm);
+
+        if (attrs != null) {
+            TypedArray a = context.obtainStyledAttributes(attrs, PinyinTextView.ATTRS);
+            mTextSize = a.getDimensionPixelSize(0, mTextSize);
+            mTextColor = a.getColor(1, mTextColor);
+            mPinyinTextColor = a.getColor(2, mPinyinTextColor);
+            mHorizontalSpacing = a.getDimensionPixelSize(3, mHorizontalSpacing);
+            mVerticalSpacing = a.getDimensionPixelSize(4, mVerticalSpacing);
+            a.recycle();
+        }
+
+        setLayoutManager(new LinearLayoutManager(context));
+        setAdapter(mAdapter);
+        addItemDecoration(new BlockSpacing());
+    }
+
+    /**
+     * Display a pinyin document. The list is kept (not copied) and must not be changed afterwards.
+     *
+     * @param pinyinList Text-Pinyin pair.
+     */
+    public void setPinyinText(List<Pair<String, String>> pinyinList) {
+        mPinyinList = pinyinList;
+        splitBlocks();
+        mAdapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Set min number of items in a block. A block ends at the first hard break after this many items. A block with
+     * twice as many items and no hard break ends at the start of its last line, measured at the width of the view.
+     * Before the view has a width, it ends after the item instead, which breaks the line there until the view is laid
+     * out.
+     *
+     * @param blockSize min number of items in a block.
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must larger than 0");
+        }
+        mBlockSize = blockSize;
+        if (mPinyinList != null) {
+            splitBlocks();
+            mAdapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Set text size in pixels. See {@link PinyinTextView#setTextSize(int)}.
+     *
+     * @param px text size in pixels.
+     */
+    public void setTextSize(int px) {
+        mTextSize = px;
+        mPinyinTextSize = 0;
+        onLineStyleChanged();
+    }
+
+    /**
+     * Set pinyin text size in pixels. See {@link PinyinTextView#setPinyinTextSize(int)}.
+     *
+     * @param px pinyin text size in pixels.
+     */
+    public void setPinyinTextSize(int px) {
+        mPinyinTextSize = px;
+        onLineStyleChanged();
+    }
+
+    /**
+     * Set text color. See {@link PinyinTextView#setTextColor(int)}.
+     *
+     * @param color text color.
+     */
+    public void setTextColor(int color) {
+        mTextColor = color;
+        mStyleVersion++;
+        mAdapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Set pinyin text color. See {@link PinyinTextView#setPinyinTextColor(int)}.
+     *
+     * @param color pinyin text color.
+     */
+    public void setPinyinTextColor(int color) {
+        mPinyinTextColor = color;
+        mStyleVersion++;
+        mAdapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Set line spacing in pixels. See {@link PinyinTextView#setHorizontalSpacing(int)}.
+     *
+     * @param px line spacing in pixels.
+     */
+    public void setHorizontalSpacing(int px) {
+        mHorizontalSpacing = px;
+        onLineStyleChanged();
+    }
+
+    /**
+     * Set spacing between two items in pixels. See {@link PinyinTextView#setVerticalSpacing(int)}.
+     *
+     * @param px spacing in pixels.
+     */
+    public void setVerticalSpacing(int px) {
+        mVerticalSpacing = px;
+        onLineStyleChanged();
+    }
+
+    // line breaks change with these, so blocks are split again
+    private void onLineStyleChanged() {
+        mStyleVersion++;
+        if (mPinyinList != null) {
+            splitBlocks();
+        }
+        mAdapter.notifyDataSetChanged();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (w != oldw) {
+            removeCallbacks(mResplit);
+            post(mResplit);
+        }
+    }
+
+    // find block starts at hard breaks, only paragraphs longer than twice the block size are measured here
+    private void splitBlocks() {
+        mBlockStarts = DocumentBlocks.split(mDocument, mBlockSize);
+        mBlockCount = mBlockStarts.length - 1;
+    }
+
+    private void applyStyle(PinyinTextView view) {
+        view.setTextSize(mTextSize);
+        if (mPinyinTextSize > 0) {
+            view.setPinyinTextSize(mPinyinTextSize);
+        }
+        view.setTextColor(mTextColor);
+        view.setPinyinTextColor(mPinyinTextColor);
+        view.setHorizontalSpacing(mHorizontalSpacing);
+        view.setVerticalSpacing(mVerticalSpacing);
+    }
+
+    // a block's height ends with the descent allowance below its last line, the same as PinyinLayout.getHeight
+    private int getBlockDescent() {
+        return FontMetricsCache.getAscent(null, mTextSize, mPaint) / 4;
+    }
+
+    // places blocks one line spacing apart, like lines inside a block. The offset is negative if the descent
+    // allowance is larger than the spacing
+    private class BlockSpacing extends ItemDecoration {
+        @Override
+        public void getItemOffsets(Rect outRect, View view, RecyclerView parent, State state) {
+            int position = parent.getChildAdapterPosition(view);
+            if (position != NO_POSITION && position < mBlockCount - 1) {
+                outRect.set(0, 0, 0, mHorizontalSpacing - getBlockDescent());
+            } else {
+                outRect.setEmpty();
+            }
+        }
+    }
+
+    private class BlockAdapter extends Adapter<BlockHolder> {
+
+        @Override
+        public BlockHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            PinyinTextView view = new PinyinTextView(parent.getContext());
+            view.setLayoutParams(new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.WRAP_CONTENT));
+            return new BlockHolder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(BlockHolder holder, int position) {
+            if (holder.styleVersion != mStyleVersion) {
+                holder.view.setPinyinText(Collections.<Pair<String, String>>emptyList()); // don't measure old text
+                applyStyle(holder.view);
+                holder.styleVersion = mStyleVersion;
+            }
+            // items are measured here, lines are broken when the view is laid out
+            holder.view.setPinyinText(mPinyinList.subList(mBlockStarts[position], mBlockStarts[position + 1]));
+        }
+
+        @Override
+        public void onViewRecycled(BlockHolder holder) {
+            holder.view.setPinyinText(Collections.<Pair<String, String>>emptyList());
+        }
+
+        @Override
+        public int getItemCount() {
+            return mBlockCount;
+        }
+    }
+
+    private static class BlockHolder extends ViewHolder {
+        final PinyinTextView view;
+        int styleVersion = -1;
+
+        BlockHolder(PinyinTextView view) {
+            super(view);
+            this.view = view;
+        }
+    }
+}
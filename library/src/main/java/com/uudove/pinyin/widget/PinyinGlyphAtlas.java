@@ -0,0 +1,253 @@
+package com.uudove.pinyin.widget;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.text.TextPaint;
+
+/**
+ * Pinyin syllables rendered once into an alpha bitmap, then drawn as sprites instead of shaping and rasterizing the
+ * text on every draw. Mandarin has about 1,500 tone-marked syllables, and a text uses much fewer.<br/>
+ * An atlas holds the syllables of one text style in cells of the same size. Alpha bitmaps are drawn in the color of
+ * the paint, so an atlas is shared by all colors. Atlases are shared by all views, the least recently used is dropped
+ * when there are too many.<br/>
+ * A cell is never overwritten: display lists of other views may still sample it, and a view is not recorded again
+ * when it is only scrolled or moved. Once all cells are used, other syllables are drawn as text until the atlas is
+ * dropped by {@link #clear()}.<br/>
+ * Not thread safe, used on the main thread only.
+ *
+ * @author wangjingtao
+ */
+final class PinyinGlyphAtlas {
+
+    private static final int MAX_ATLAS_COUNT = 3;
+
+    // max bytes of one atlas, 1 byte per pixel
+    private static final int MAX_BYTES = 2 * 1024 * 1024;
+
+    private static final int MAX_CELL_COUNT = 512;
+
+    // max width of an atlas, below the max texture size of all GPUs
+    private static final int MAX_WIDTH = 2048;
+
+    // widest common syllable, a cell fits it. Wider pinyin is drawn as text
+    private static final String WIDEST_SYLLABLE = "zhuàng";
+
+    // pixels around each glyph for anti-aliasing and overhang
+    private static final int PADDING = 2;
+
+    private static final int NONE = -1;
+
+    // key: text style, least recently used first
+    private static final LinkedHashMap<Key, PinyinGlyphAtlas> sAtlases =
+            new LinkedHashMap<Key, PinyinGlyphAtlas>(8, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, PinyinGlyphAtlas> eldest) {
+                    return size() > MAX_ATLAS_COUNT;
+                }
+            };
+
+    // looks up atlases on every draw without allocating, never put in sAtlases
+    private static final Key sLookupKey = new Key();
+
+    private final Bitmap mBitmap;
+    private final Canvas mCanvas;
+    private final TextPaint mPaint;
+
+    private final int mCellWidth;
+    private final int mCellHeight;
+    private final int mColumnCount;
+    private final int mCellCount;
+    private final int mAscent; // from the top of a cell to the baseline
+
+    // cells in use, keys are the chars drawn in a cell. Cells [0, mUsedCount) are used
+    private final char[][] mKeys;
+    private final int[] mHashes;
+    private int mUsedCount;
+
+    // hash table of cells by key, chained through mChainNext
+    private final int[] mBuckets;
+    private final int[] mChainNext;
+
+    private final Rect mSrc = new Rect();
+    private final Rect mDst = new Rect();
+
+    private PinyinGlyphAtlas(TextPaint paint) {
+        mPaint = new TextPaint(paint);
+        mPaint.setColor(Color.BLACK); // only alpha is kept
+
+        Paint.FontMetricsInt metrics = mPaint.getFontMetricsInt();
+        mAscent = -metrics.top + PADDING;
+        mCellHeight = mAscent + metrics.bottom + PADDING;
+        mCellWidth = (int) Math.ceil(mPaint.measureText(WIDEST_SYLLABLE)) + PADDING * 2;
+
+        int cellCount = Math.min(MAX_BYTES / (mCellWidth * mCellHeight), MAX_CELL_COUNT);
+        mColumnCount = Math.max(Math.min(MAX_WIDTH / mCellWidth, cellCount), 1);
+        int rowCount = Math.max(cellCount / mColumnCount, 1);
+        mCellCount = mColumnCount * rowCount;
+
+        mBitmap = Bitmap.createBitmap(mColumnCount * mCellWidth, rowCount * mCellHeight, Bitmap.Config.ALPHA_8);
+        mCanvas = new Canvas(mBitmap);
+
+        mKeys = new char[mCellCount][];
+        mHashes = new int[mCellCount];
+        mBuckets = new int[Integer.highestOneBit(mCellCount * 2 - 1) << 1];
+        Arrays.fill(mBuckets, NONE);
+        mChainNext = new int[mCellCount];
+    }
+
+    /**
+     * Get the atlas of the text style of the paint, created if needed. Typeface, text size, flags (such as fake bold),
+     * skew, scale and letter spacing all change the glyphs, each combination has its own atlas.
+     *
+     * @param paint paint to render syllables with, its color is not used.
+     */
+    static PinyinGlyphAtlas obtain(TextPaint paint) {
+        sLookupKey.set(paint);
+        PinyinGlyphAtlas atlas = sAtlases.get(sLookupKey);
+        if (atlas == null) {
+            atlas = new PinyinGlyphAtlas(paint);
+            Key key = new Key();
+            key.set(paint);
+            sAtlases.put(key, atlas);
+        }
+        return atlas;
+    }
+
+    /**
+     * Drop all atlases, they are created again when drawn.
+     */
+    static void clear() {
+        sAtlases.clear();
+    }
+
+    /**
+     * Draw chars [start, start + count) from the atlas, rendered into it first if not there.
+     *
+     * @param x     left of the text.
+     * @param y     baseline of the text.
+     * @param paint paint with the color to draw in.
+     *
+     * @return false if the text doesn't fit in a cell or all cells are used, it is not drawn then.
+     */
+    boolean draw(Canvas canvas, char[] chars, int start, int count, int x, int y, Paint paint) {
+        int cell = find(chars, start, count);
+        if (cell == NONE) {
+            if (mUsedCount == mCellCount || count > WIDEST_SYLLABLE.length() * 2
+                    || mPaint.measureText(chars, start, count) > mCellWidth - PADDING * 2) {
+                return false;
+            }
+            cell = add(chars, start, count);
+        }
+
+        int left = cell % mColumnCount * mCellWidth;
+        int top = cell / mColumnCount * mCellHeight;
+        mSrc.set(left, top, left + mCellWidth, top + mCellHeight);
+        mDst.set(x - PADDING, y - mAscent, x - PADDING + mCellWidth, y - mAscent + mCellHeight);
+        canvas.drawBitmap(mBitmap, mSrc, mDst, paint);
+        return true;
+    }
+
+    private int find(char[] chars, int start, int count) {
+        int hash = hash(chars, start, count);
+        for (int cell = mBuckets[hash & (mBuckets.length - 1)]; cell != NONE; cell = mChainNext[cell]) {
+            if (mHashes[cell] == hash && equals(mKeys[cell], chars, start, count)) {
+                return cell;
+            }
+        }
+        return NONE;
+    }
+
+    // render the chars into the next free cell
+    private int add(char[] chars, int start, int count) {
+        int cell = mUsedCount++;
+        int hash = hash(chars, start, count);
+        char[] key = new char[count]; // Arrays.copyOfRange needs API 9
+        System.arraycopy(chars, start, key, 0, count);
+        mKeys[cell] = key;
+        mHashes[cell] = hash;
+        int bucket = hash & (mBuckets.length - 1);
+        mChainNext[cell] = mBuckets[bucket];
+        mBuckets[bucket] = cell;
+
+        int left = cell % mColumnCount * mCellWidth;
+        int top = cell / mColumnCount * mCellHeight;
+        int saveCount = mCanvas.save();
+        mCanvas.clipRect(left, top, left + mCellWidth, top + mCellHeight);
+        mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        mCanvas.drawText(chars, start, count, left + PADDING, top + mAscent, mPaint);
+        mCanvas.restoreToCount(saveCount);
+        return cell;
+    }
+
+    // same as String.hashCode of the chars
+    private static int hash(char[] chars, int start, int count) {
+        int hash = 0;
+        for (int i = start; i < start + count; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash;
+    }
+
+    private static boolean equals(char[] key, char[] chars, int start, int count) {
+        if (key.length != count) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (key[i] != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // glyphs are the same for paints with the same key
+    private static final class Key {
+        private Typeface mTypeface;
+        private float mTextSize;
+        private int mFlags;
+        private float mTextSkewX;
+        private float mTextScaleX;
+        private float mLetterSpacing;
+
+        void set(Paint paint) {
+            mTypeface = paint.getTypeface();
+            mTextSize = paint.getTextSize();
+            mFlags = paint.getFlags();
+            mTextSkewX = paint.getTextSkewX();
+            mTextScaleX = paint.getTextScaleX();
+            mLetterSpacing = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? paint.getLetterSpacing() : 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mTypeface == key.mTypeface && mTextSize == key.mTextSize && mFlags == key.mFlags
+                    && mTextSkewX == key.mTextSkewX && mTextScaleX == key.mTextScaleX
+                    && mLetterSpacing == key.mLetterSpacing;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(mTypeface);
+            result = 31 * result + Float.floatToIntBits(mTextSize);
+            result = 31 * result + mFlags;
+            result = 31 * result + Float.floatToIntBits(mTextSkewX);
+            result = 31 * result + Float.floatToIntBits(mTextScaleX);
+            result = 31 * result + Float.floatToIntBits(mLetterSpacing);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package com.uudove.pinyin.widget;
+
+/**
+ * Immutable result of breaking pinyin items into lines for one available width.<br/>
+ * Each line is a row of pinyin drawn above a row of text, see {@link PinyinTextView}. A line ends when the next item
+ * doesn't fit, or after a hard break (an item whose text ends with '\n'), so paragraphs are broken into lines
+ * independently. Coordinates are relative to the top-left corner of the content area (padding excluded).
+ *
+ * @author wangjingtao
+ */
+final class PinyinLayout {
+
+    // available width this layout was computed for
+    private final int mAvailableWidth;
+
+    // width of the longest line and total height
+    private final int mWidth;
+    private final int mHeight;
+
+    // heights and spacing used to place lines
+    private final int mPinyinHeight;
+    private final int mTextHeight;
+    private final int mPinyinTextSpacing;
+    private final int mLineSpacing;
+    private final int mItemSpacing;
+
+    private final int mItemCount;
+    private final int mLineCount;
+
+    // left of each item
+    private final int[] mItemLeft;
+    // top of each line (top of pinyin)
+    private final int[] mLineTop;
+    // width of each line
+    private final int[] mLineWidth;
+    // first item of each line, mLineStart[mLineCount] == mItemCount
+    private final int[] mLineStart;
+
+    private PinyinLayout(int availableWidth, int width, int height, int pinyinHeight, int textHeight,
+                         int pinyinTextSpacing, int lineSpacing, int itemSpacing, int itemCount, int lineCount,
+                         int[] itemLeft, int[] lineTop, int[] lineWidth, int[] lineStart) {
+        mAvailableWidth = availableWidth;
+        mWidth = width;
+        mHeight = height;
+        mPinyinHeight = pinyinHeight;
+        mTextHeight = textHeight;
+        mPinyinTextSpacing = pinyinTextSpacing;
+        mLineSpacing = lineSpacing;
+        mItemSpacing = itemSpacing;
+        mItemCount = itemCount;
+        mLineCount = lineCount;
+        mItemLeft = itemLeft;
+        mLineTop = lineTop;
+        mLineWidth = lineWidth;
+        mLineStart = lineStart;
+    }
+
+    /**
+     * Break items into lines.
+     *
+     * @param itemCount         number of items.
+     * @param textWidths        text width of each item.
+     * @param pinyinWidths      pinyin width of each item.
+     * @param hardBreaks        items ending a line whatever its width, ascending.
+     * @param textHeight        height of text.
+     * @param pinyinHeight      height of pinyin above its baseline.
+     * @param pinyinTextSpacing spacing between the pinyin baseline and the top of text, pinyin descent included.
+     * @param lineSpacing       spacing between two lines.
+     * @param itemSpacing       spacing between two items.
+     * @param availableWidth    max width of a line.
+     *
+     * @return the layout.
+     */
+    static PinyinLayout create(int itemCount, int[] textWidths, int[] pinyinWidths, int[] hardBreaks,
+                               int textHeight, int pinyinHeight, int pinyinTextSpacing, int lineSpacing,
+                               int itemSpacing, int availableWidth) {
+        return createPart(0, itemCount, itemCount, textWidths, pinyinWidths, hardBreaks, textHeight, pinyinHeight,
+                pinyinTextSpacing, lineSpacing, itemSpacing, availableWidth, new int[itemCount]);
+    }
+
+    /**
+     * Break items [start, end) into lines, to be joined with the other parts by {@link #join(PinyinLayout[], int)}.
+     * Item start must begin a line, that is the first item or the one after a hard break. Line tops of the part start
+     * from 0.
+     *
+     * @param itemLeft left of each item of all parts, items [start, end) are set.
+     */
+    static PinyinLayout createPart(int start, int end, int itemCount, int[] textWidths, int[] pinyinWidths,
+                                   int[] hardBreaks, int textHeight, int pinyinHeight, int pinyinTextSpacing,
+                                   int lineSpacing, int itemSpacing, int availableWidth, int[] itemLeft) {
+        int[] lineTop = new int[8];
+        int[] lineWidth = new int[8];
+        int[] lineStart = new int[9];
+        lineStart[0] = start;
+
+        return breakLines(null, 0, 0, itemCount, end, textWidths, pinyinWidths, hardBreaks, textHeight,
+                pinyinHeight, pinyinTextSpacing, lineSpacing, itemSpacing, availableWidth, itemLeft, lineTop,
+                lineWidth, lineStart, 0, null);
+    }
+
+    /**
+     * Join parts created by {@link #createPart(int, int, int, int[], int[], int[], int, int, int, int, int, int,
+     * int[])} for consecutive items, in order. The result is the same as creating the layout of all items at once.
+     *
+     * @param parts     parts, all sharing the same itemLeft array.
+     * @param itemCount number of items of all parts.
+     */
+    static PinyinLayout join(PinyinLayout[] parts, int itemCount) {
+        PinyinLayout first = parts[0];
+        int lineCount = 0;
+        for (PinyinLayout part : parts) {
+            lineCount += part.mLineCount;
+        }
+
+        int lineHeight = first.mPinyinHeight + first.mPinyinTextSpacing + first.mTextHeight;
+        int[] lineTop = new int[lineCount];
+        int[] lineWidth = new int[lineCount];
+        int[] lineStart = new int[lineCount + 1];
+        int line = 0;
+        int top = 0; // top of the first line of the part
+        for (PinyinLayout part : parts) {
+            for (int i = 0; i < part.mLineCount; i++) {
+                lineTop[line + i] = top + part.mLineTop[i];
+            }
+            System.arraycopy(part.mLineWidth, 0, lineWidth, line, part.mLineCount);
+            System.arraycopy(part.mLineStart, 0, lineStart, line, part.mLineCount);
+            line += part.mLineCount;
+            top = lineTop[line - 1] + lineHeight + first.mLineSpacing;
+        }
+        lineStart[lineCount] = itemCount;
+
+        return finish(first.mAvailableWidth, first.mTextHeight, first.mPinyinHeight, first.mPinyinTextSpacing,
+                first.mLineSpacing, first.mItemSpacing, itemCount, lineCount, first.mItemLeft, lineTop, lineWidth,
+                lineStart);
+    }
+
+    /**
+     * Create a layout saved before, without breaking lines. Arrays are not copied.
+     *
+     * @param lineStart first item of each line, and the item count at index lineCount.
+     */
+    static PinyinLayout restore(int availableWidth, int textHeight, int pinyinHeight, int pinyinTextSpacing,
+                                int lineSpacing, int itemSpacing, int itemCount, int lineCount, int[] itemLeft,
+                                int[] lineTop, int[] lineWidth, int[] lineStart) {
+        return finish(availableWidth, textHeight, pinyinHeight, pinyinTextSpacing, lineSpacing, itemSpacing,
+                itemCount, lineCount, itemLeft, lineTop, lineWidth, lineStart);
+    }
+
+    /**
+     * Break lines again after items [changeStart, oldChangeEnd) of the old layout were replaced by items
+     * [changeStart, newChangeEnd). Lines before the change are kept, and lines after it are copied (moved up or down)
+     * as soon as a new line starts at the same item as an old one, so only lines around the change are broken again.
+     *
+     * @param old          layout before the change, heights and spacing are kept.
+     * @param changeStart  first changed item.
+     * @param oldChangeEnd end of the changed items in the old layout.
+     * @param newChangeEnd end of the changed items in the new layout.
+     * @param itemCount    number of items after the change.
+     * @param textWidths   text width of each item after the change.
+     * @param pinyinWidths pinyin width of each item after the change.
+     * @param hardBreaks   items ending a line after the change, ascending.
+     * @param dirty        set to the area that needs to be drawn again, as {left, top, right, bottom}. May be
+     *                     null.
+     *
+     * @return the new layout.
+     */
+    static PinyinLayout update(PinyinLayout old, int changeStart, int oldChangeEnd, int newChangeEnd, int itemCount,
+                               int[] textWidths, int[] pinyinWidths, int[] hardBreaks, int[] dirty) {
+        // an item may move back to the previous line if it becomes narrower, start one line earlier
+        int startLine = old.getLineForItem(changeStart);
+        if (startLine > 0) {
+            startLine--;
+        }
+        int startItem = old.mLineStart[startLine];
+
+        int lineCapacity = old.mLineCount + 8;
+        int[] itemLeft = new int[itemCount];
+        int[] lineTop = new int[lineCapacity];
+        int[] lineWidth = new int[lineCapacity];
+        int[] lineStart = new int[lineCapacity + 1];
+        System.arraycopy(old.mItemLeft, 0, itemLeft, 0, startItem);
+        System.arraycopy(old.mLineTop, 0, lineTop, 0, startLine + 1);
+        System.arraycopy(old.mLineWidth, 0, lineWidth, 0, startLine);
+        System.arraycopy(old.mLineStart, 0, lineStart, 0, startLine + 1);
+
+        PinyinLayout layout = breakLines(old, startLine, newChangeEnd - oldChangeEnd, itemCount, itemCount,
+                textWidths, pinyinWidths, hardBreaks, old.mTextHeight, old.mPinyinHeight, old.mPinyinTextSpacing,
+                old.mLineSpacing, old.mItemSpacing, old.mAvailableWidth, itemLeft, lineTop, lineWidth, lineStart,
+                newChangeEnd, dirty);
+
+        if (dirty != null) {
+            dirty[0] = 0;
+            dirty[1] = lineTop[startLine] - layout.mLineSpacing;
+            dirty[2] = Math.max(old.mWidth, layout.mWidth);
+            if (dirty[3] < 0) { // not converged, or converged lines moved
+                dirty[3] = Math.max(old.mHeight, layout.mHeight);
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Break items into lines, from the first item of line startLine to item end. Line startLine must already have its
+     * top and start set, and the lines before it must be complete.<br/>
+     * If old is not null, lines of old after item convergeFrom - shift are reused once a new line starts at the same
+     * item, and the bottom of dirty (dirty[3]) is set to the top of the first reused line if reused lines didn't move,
+     * -1 otherwise.
+     */
+    private static PinyinLayout breakLines(PinyinLayout old, int startLine, int shift, int itemCount, int end,
+                                           int[] textWidths, int[] pinyinWidths, int[] hardBreaks,
+                                           int textHeight, int pinyinHeight,
+                                           int pinyinTextSpacing, int lineSpacing, int itemSpacing,
+                                           int availableWidth, int[] itemLeft, int[] lineTop, int[] lineWidth,
+                                           int[] lineStart, int convergeFrom, int[] dirty) {
+        int lineHeight = pinyinHeight + pinyinTextSpacing + textHeight;
+
+        int lineCount = startLine + 1;
+        int lineLength = 0;
+        int top = lineTop[startLine]; // top of pinyin
+
+        if (dirty != null) {
+            dirty[3] = -1;
+        }
+
+        // next hard break at or after the first item
+        int nextBreak = findHardBreak(hardBreaks, lineStart[startLine]);
+        boolean breakPending = false;
+
+        for (int i = lineStart[startLine]; i < end; i++) {
+            int maxWidth = Math.max(textWidths[i], pinyinWidths[i]);
+            boolean lineEmpty = i == lineStart[lineCount - 1];
+
+            if (!lineEmpty && (breakPending || lineLength + itemSpacing + maxWidth > availableWidth)) { // new row
+                lineWidth[lineCount - 1] = lineLength;
+                top += lineHeight + lineSpacing;
+
+                // reuse the rest of the old lines if the new line starts where an old line started
+                if (old != null && i >= convergeFrom && i - shift < old.mItemCount) {
+                    int oldLine = old.getLineForItem(i - shift);
+                    if (old.mLineStart[oldLine] == i - shift) {
+                        int moved = top - old.mLineTop[oldLine];
+                        int copied = old.mLineCount - oldLine;
+                        if (lineCount + copied > lineTop.length) {
+                            lineTop = grow(lineTop, lineCount + copied);
+                            lineWidth = grow(lineWidth, lineCount + copied);
+                            lineStart = grow(lineStart, lineCount + copied + 1);
+                        }
+                        for (int line = 0; line < copied; line++) {
+                            lineTop[lineCount + line] = old.mLineTop[oldLine + line] + moved;
+                            lineWidth[lineCount + line] = old.mLineWidth[oldLine + line];
+                            lineStart[lineCount + line] = old.mLineStart[oldLine + line] + shift;
+                        }
+                        System.arraycopy(old.mItemLeft, i - shift, itemLeft, i, itemCount - i);
+                        lineCount += copied;
+                        lineStart[lineCount] = itemCount;
+
+                        if (dirty != null && moved == 0) {
+                            dirty[3] = top + textHeight / 4; // descent of the previous line
+                        }
+                        return finish(availableWidth, textHeight, pinyinHeight, pinyinTextSpacing, lineSpacing,
+                                itemSpacing, itemCount, lineCount, itemLeft, lineTop, lineWidth, lineStart);
+                    }
+                }
+
+                if (lineCount == lineTop.length) {
+                    lineTop = grow(lineTop, lineCount * 2);
+                    lineWidth = grow(lineWidth, lineCount * 2);
+                    lineStart = grow(lineStart, lineCount * 2 + 1);
+                }
+                lineTop[lineCount] = top;
+                lineStart[lineCount] = i;
+                lineCount++;
+
+                lineLength = 0;
+                lineEmpty = true;
+                breakPending = false;
+            }
+
+            if (!lineEmpty) {
+                lineLength += itemSpacing;
+            }
+            itemLeft[i] = lineLength;
+            lineLength += maxWidth;
+
+            if (nextBreak < hardBreaks.length && hardBreaks[nextBreak] == i) {
+                breakPending = true;
+                nextBreak++;
+            }
+        }
+        lineWidth[lineCount - 1] = lineLength;
+        lineStart[lineCount] = end;
+
+        return finish(availableWidth, textHeight, pinyinHeight, pinyinTextSpacing, lineSpacing, itemSpacing,
+                itemCount, lineCount, itemLeft, lineTop, lineWidth, lineStart);
+    }
+
+    /**
+     * Find the first hard break at or after the item.
+     *
+     * @return index in hardBreaks, hardBreaks.length if there is none.
+     */
+    static int findHardBreak(int[] hardBreaks, int item) {
+        int low = 0;
+        int high = hardBreaks.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (hardBreaks[mid] < item) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Count lines of items with widths scaled, without laying them out. Same line breaking as
+     * {@link #create(int, int[], int[], int[], int, int, int, int, int, int)}.
+     *
+     * @return line count, or -1 if an item is wider than availableWidth.
+     */
+    static int countLines(int itemCount, int[] textWidths, float textScale, int[] pinyinWidths, float pinyinScale,
+                          int[] hardBreaks, int itemSpacing, int availableWidth) {
+        int lineCount = 1;
+        int lineLength = 0;
+        boolean lineEmpty = true;
+        int nextBreak = 0;
+        boolean breakPending = false;
+        for (int i = 0; i < itemCount; i++) {
+            int maxWidth = Math.max((int) Math.ceil(textWidths[i] * textScale),
+                    (int) Math.ceil(pinyinWidths[i] * pinyinScale));
+            if (maxWidth > availableWidth) {
+                return -1;
+            }
+            if (!lineEmpty && (breakPending || lineLength + itemSpacing + maxWidth > availableWidth)) { // new row
+                lineCount++;
+                lineLength = 0;
+                lineEmpty = true;
+                breakPending = false;
+            }
+            if (!lineEmpty) {
+                lineLength += itemSpacing;
+            }
+            lineLength += maxWidth;
+            lineEmpty = false;
+
+            if (nextBreak < hardBreaks.length && hardBreaks[nextBreak] == i) {
+                breakPending = true;
+                nextBreak++;
+            }
+        }
+        return lineCount;
+    }
+
+    /**
+     * Get the height of lineCount lines, the same as {@link #getHeight()} of a layout with that many lines.
+     */
+    static int getHeight(int lineCount, int textHeight, int pinyinHeight, int pinyinTextSpacing, int lineSpacing) {
+        int lineHeight = pinyinHeight + pinyinTextSpacing + textHeight;
+        return (lineCount - 1) * (lineHeight + lineSpacing) + lineHeight + textHeight / 4;
+    }
+
+    private static PinyinLayout finish(int availableWidth, int textHeight, int pinyinHeight, int pinyinTextSpacing,
+                                       int lineSpacing, int itemSpacing, int itemCount, int lineCount,
+                                       int[] itemLeft, int[] lineTop, int[] lineWidth, int[] lineStart) {
+        int maxLineLength = 0;
+        for (int line = 0; line < lineCount; line++) {
+            if (lineWidth[line] > maxLineLength) {
+                maxLineLength = lineWidth[line];
+            }
+        }
+
+        int lineHeight = pinyinHeight + pinyinTextSpacing + textHeight;
+        int height = lineTop[lineCount - 1] + lineHeight + textHeight / 4; // leave room for descent of the last line
+
+        return new PinyinLayout(availableWidth, maxLineLength, height, pinyinHeight, textHeight, pinyinTextSpacing,
+                lineSpacing, itemSpacing, itemCount, lineCount, itemLeft, lineTop, lineWidth, lineStart);
+    }
+
+    private static int[] grow(int[] array, int newLength) {
+        int[] newArray = new int[newLength];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    /**
+     * @return the available width this layout was computed for.
+     */
+    int getAvailableWidth() {
+        return mAvailableWidth;
+    }
+
+    /**
+     * @return width of the longest line.
+     */
+    int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return total height of all lines.
+     */
+    int getHeight() {
+        return mHeight;
+    }
+
+    int getItemCount() {
+        return mItemCount;
+    }
+
+    int getLineCount() {
+        return mLineCount;
+    }
+
+    /**
+     * @return first item of the line.
+     */
+    int getLineStart(int line) {
+        return mLineStart[line];
+    }
+
+    /**
+     * @return item after the last item of the line.
+     */
+    int getLineEnd(int line) {
+        return mLineStart[line + 1];
+    }
+
+    /**
+     * Get the line the item is in. An item equal to the item count is in the last line.
+     *
+     * @param item the item.
+     *
+     * @return the line.
+     */
+    int getLineForItem(int item) {
+        int low = 0;
+        int high = mLineCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mLineStart[mid] <= item) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return width of the line.
+     */
+    int getLineWidth(int line) {
+        return mLineWidth[line];
+    }
+
+    /**
+     * @return top of the line (top of pinyin).
+     */
+    int getLineTop(int line) {
+        return mLineTop[line];
+    }
+
+    /**
+     * @return bottom of the line (bottom of text).
+     */
+    int getLineBottom(int line) {
+        return mLineTop[line] + mPinyinHeight + mPinyinTextSpacing + mTextHeight;
+    }
+
+    /**
+     * @return baseline of pinyin in the line.
+     */
+    int getPinyinBaseline(int line) {
+        return mLineTop[line] + mPinyinHeight;
+    }
+
+    /**
+     * @return baseline of text in the line.
+     */
+    int getTextBaseline(int line) {
+        return getLineBottom(line);
+    }
+
+    /**
+     * Get the line at the vertical position, like {@link android.text.Layout#getLineForVertical(int)}.
+     *
+     * @param vertical y relative to the top of the layout.
+     *
+     * @return the last line whose top is not below the position, 0 if above the first line.
+     */
+    int getLineForVertical(int vertical) {
+        int low = 0;
+        int high = mLineCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mLineTop[mid] <= vertical) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Get the item of the line at the horizontal position.
+     *
+     * @param line       the line.
+     * @param horizontal x relative to the left of the layout.
+     *
+     * @return the last item of the line whose left is not right of the position, the first item of the line if left
+     * of it.
+     */
+    int getItemForHorizontal(int line, int horizontal) {
+        int low = mLineStart[line];
+        int high = mLineStart[line + 1] - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mItemLeft[mid] <= horizontal) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return left of the item.
+     */
+    int getItemLeft(int item) {
+        return mItemLeft[item];
+    }
+
+    int getPinyinHeight() {
+        return mPinyinHeight;
+    }
+
+    int getTextHeight() {
+        return mTextHeight;
+    }
+}
@@ -0,0 +1,472 @@
+package com.uudove.pinyin.widget;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.text.TextPaint;
+import android.util.Pair;
+
+/**
+ * Persistent cache of measured and laid out content, for fixed content shown again and again, like the pages of a
+ * textbook.<br/>
+ * Each layout is saved in its own file, keyed by a hash of the content, text sizes, spacing, typeface, width and the
+ * system build (fonts may change with it). A cached layout is restored without measuring any text or breaking any
+ * line. The file is memory mapped only to read its arrays into the heap in bulk, the restored text doesn't keep the
+ * mapping. Content or style that changed simply doesn't match any file, a corrupted file is deleted, and least
+ * recently used files are deleted once the directory grows over its max size.
+ * <pre>
+ * PinyinLayoutCache cache = new PinyinLayoutCache(new File(context.getCacheDir(), "pinyin-layout"));
+ * // off the main thread
+ * PrecomputedPinyinText text = cache.getOrCreate(pairList, pinyinTextView.getPinyinTextParams(), width);
+ * </pre>
+ * Only layouts of known typefaces are saved: the default ones, and those named by
+ * {@link #setTypefaceName(Typeface, String)}. Methods are thread safe and do file IO, don't call them on the main
+ * thread. See {@link #MAGIC} for the file format.
+ *
+ * @author wangjingtao
+ */
+public final class PinyinLayoutCache {
+
+    /**
+     * Magic number "PYL2" at the start of each file. Files are big endian:
+     * <pre>
+     * long   content hash
+     * long   environment hash (typeface name, system build)
+     * int    text size, pinyin text size, horizontal spacing, vertical spacing, width
+     * int    item count (N), text char count, pinyin char count
+     * int    text height, pinyin height, pinyin descent
+     * int    line count (L)
+     * int[N] text widths
+     * int[N] pinyin widths
+     * int[N] item lefts
+     * int[L] line tops
+     * int[L] line widths
+     * int[L + 1] line starts
+     * </pre>
+     */
+    public static final int MAGIC = 0x50594C32;
+
+    /**
+     * Default max size of the cache directory in bytes. A page of 1,000 items takes about 20 KB.
+     */
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+    private static final int HEADER_SIZE = 4 + 8 + 8 + 12 * 4;
+
+    private static final String SUFFIX = ".pyl";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    // guarded by this
+    private final Map<Typeface, String> mTypefaceNames = new IdentityHashMap<Typeface, String>();
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * @param directory directory to save layouts in, created if needed. Should not be used for anything else.
+     */
+    public PinyinLayoutCache(File directory) {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param directory directory to save layouts in, created if needed. Should not be used for anything else.
+     * @param maxBytes  max size of the directory in bytes.
+     */
+    public PinyinLayoutCache(File directory, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must larger than 0");
+        }
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        mTypefaceNames.put(null, "default");
+        mTypefaceNames.put(Typeface.DEFAULT, "default");
+        mTypefaceNames.put(Typeface.DEFAULT_BOLD, "default-bold");
+        mTypefaceNames.put(Typeface.SANS_SERIF, "sans-serif");
+        mTypefaceNames.put(Typeface.SERIF, "serif");
+        mTypefaceNames.put(Typeface.MONOSPACE, "monospace");
+    }
+
+    /**
+     * Name a typeface, so layouts measured with it are saved. Typefaces have no identity that survives the process,
+     * so the name must change when the font does, e.g. include the font file name and version.
+     *
+     * @param typeface typeface.
+     * @param name     unique name of the typeface.
+     */
+    public synchronized void setTypefaceName(Typeface typeface, String name) {
+        mTypefaceNames.put(typeface, name);
+    }
+
+    private synchronized String getTypefaceName(Typeface typeface) {
+        return mTypefaceNames.get(typeface);
+    }
+
+    /**
+     * Get the content laid out for the width from the cache, or measure and lay it out, then save it.
+     *
+     * @param pinyinList Text-Pinyin pair.
+     * @param params     text style, usually from {@link PinyinTextView#getPinyinTextParams()}.
+     * @param width      available width of the content (padding excluded).
+     *
+     * @return the precomputed text, the same as {@link PrecomputedPinyinText#create(List,
+     * PrecomputedPinyinText.Params, int)}.
+     */
+    public PrecomputedPinyinText getOrCreate(List<Pair<String, String>> pinyinList,
+                                             PrecomputedPinyinText.Params params, int width) {
+        return getOrCreate(PrecomputedPinyinText.pack(pinyinList), params, width, null);
+    }
+
+    /**
+     * Same as {@link #getOrCreate(List, PrecomputedPinyinText.Params, int)}, with items given as char sequences and
+     * item ends like {@link PrecomputedPinyinText#create(CharSequence, int[], CharSequence, int[],
+     * PrecomputedPinyinText.Params, int)}.
+     *
+     * @throws IllegalArgumentException if the ends don't match the char sequences or each other.
+     */
+    public PrecomputedPinyinText getOrCreate(CharSequence text, int[] textEnds, CharSequence pinyin,
+                                             int[] pinyinEnds, PrecomputedPinyinText.Params params, int width) {
+        return getOrCreate(PrecomputedPinyinText.pack(text, textEnds, pinyin, pinyinEnds), params, width, null);
+    }
+
+    /**
+     * @param executor executor to measure and break lines on in parallel with the calling thread if not cached, may
+     *                 be null.
+     */
+    PrecomputedPinyinText getOrCreate(PrecomputedPinyinText.Content content, PrecomputedPinyinText.Params params,
+                                      int width, Executor executor) {
+        if (width < 0) {
+            throw new IllegalArgumentException("width must not be negative");
+        }
+        PrecomputedPinyinText text = get(content, params, width);
+        if (text == null) {
+            text = create(content, params, width, executor);
+            put(content, text);
+        }
+        return text;
+    }
+
+    /**
+     * Restore the content laid out for the width from its file.
+     *
+     * @return the saved layout, null if it is not saved, or can't be saved since its typeface has no name.
+     */
+    PrecomputedPinyinText get(PrecomputedPinyinText.Content content, PrecomputedPinyinText.Params params,
+                              int width) {
+        String typefaceName = getTypefaceName(params.getTypeface());
+        if (typefaceName == null) { // can't be keyed
+            return null;
+        }
+
+        long contentHash = hash(content);
+        long environmentHash = hashEnvironment(typefaceName);
+        File file = new File(mDirectory, getFileName(contentHash, environmentHash, params, width));
+
+        PrecomputedPinyinText text = null;
+        try {
+            text = read(file, content, contentHash, environmentHash, params, width);
+        } catch (IOException e) {
+            // missing or corrupted, measure again
+            file.delete();
+        }
+        synchronized (this) {
+            if (text != null) {
+                mHitCount++;
+            } else {
+                mMissCount++;
+            }
+        }
+        if (text != null) {
+            file.setLastModified(System.currentTimeMillis());
+        }
+        return text;
+    }
+
+    /**
+     * Save laid out content, then delete least recently used files if the directory is too large. Does nothing if
+     * the typeface has no name.
+     *
+     * @param content content of the text.
+     * @param text    the content measured and laid out.
+     */
+    void put(PrecomputedPinyinText.Content content, PrecomputedPinyinText text) {
+        PrecomputedPinyinText.Params params = text.getParams();
+        String typefaceName = getTypefaceName(params.getTypeface());
+        if (typefaceName == null) {
+            return;
+        }
+
+        long contentHash = hash(content);
+        long environmentHash = hashEnvironment(typefaceName);
+        File file = new File(mDirectory, getFileName(contentHash, environmentHash, params,
+                text.getLayout().getAvailableWidth()));
+        try {
+            write(file, text, contentHash, environmentHash);
+            trim();
+        } catch (IOException e) {
+            // the cache is optional, e.g. the disk is full
+        }
+    }
+
+    private static PrecomputedPinyinText create(PrecomputedPinyinText.Content content,
+                                                PrecomputedPinyinText.Params params, int width, Executor executor) {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.LINEAR_TEXT_FLAG);
+        return PrecomputedPinyinText.measure(params, content, paint, executor).withLayout(width, executor);
+    }
+
+    private static PrecomputedPinyinText read(File file, PrecomputedPinyinText.Content content, long contentHash,
+                                              long environmentHash, PrecomputedPinyinText.Params params, int width)
+            throws IOException {
+        ByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close(); // the mapping stays valid
+        }
+
+        int count = content.mCount;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Corrupted layout file");
+        }
+        if (buffer.getLong(4) != contentHash || buffer.getLong(12) != environmentHash
+                || buffer.getInt(20) != params.getTextSize() || buffer.getInt(24) != params.getPinyinTextSize()
+                || buffer.getInt(28) != params.getHorizontalSpacing()
+                || buffer.getInt(32) != params.getVerticalSpacing()
+                || buffer.getInt(36) != width || buffer.getInt(40) != count
+                || buffer.getInt(44) != content.mTextStarts[count]
+                || buffer.getInt(48) != content.mPinyinStarts[count]) {
+            return null; // other content or style with the same file name
+        }
+        int textHeight = buffer.getInt(52);
+        int pinyinHeight = buffer.getInt(56);
+        int pinyinDescent = buffer.getInt(60);
+        int lineCount = buffer.getInt(64);
+        if (lineCount <= 0 || buffer.capacity() != HEADER_SIZE + (count * 3 + lineCount * 3 + 1) * 4) {
+            throw new IOException("Corrupted layout file");
+        }
+
+        buffer.position(HEADER_SIZE);
+        IntBuffer ints = buffer.asIntBuffer();
+        int[] textWidths = new int[count];
+        int[] pinyinWidths = new int[count];
+        int[] itemLeft = new int[count];
+        int[] lineTop = new int[lineCount];
+        int[] lineWidth = new int[lineCount];
+        int[] lineStart = new int[lineCount + 1];
+        ints.get(textWidths);
+        ints.get(pinyinWidths);
+        ints.get(itemLeft);
+        ints.get(lineTop);
+        ints.get(lineWidth);
+        ints.get(lineStart);
+
+        // lines must cover the items in order, else the restored layout would index out of its arrays
+        if (lineStart[0] != 0 || lineStart[lineCount] != count) {
+            throw new IOException("Corrupted layout file");
+        }
+        for (int line = 0; line < lineCount; line++) {
+            if (lineStart[line] > lineStart[line + 1]) {
+                throw new IOException("Corrupted layout file");
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (itemLeft[i] < 0) {
+                throw new IOException("Corrupted layout file");
+            }
+        }
+
+        PinyinLayout layout = PinyinLayout.restore(width, textHeight, pinyinHeight,
+                pinyinDescent + params.getPinyinTextSpacing(), params.getHorizontalSpacing(),
+                params.getVerticalSpacing(), count, lineCount, itemLeft, lineTop, lineWidth, lineStart);
+        return PrecomputedPinyinText.restore(params, content, textHeight, pinyinHeight, pinyinDescent, textWidths,
+                pinyinWidths, layout);
+    }
+
+    private void write(File file, PrecomputedPinyinText text, long contentHash, long environmentHash)
+            throws IOException {
+        PrecomputedPinyinText.Params params = text.getParams();
+        PinyinLayout layout = text.getLayout();
+        int count = text.getItemCount();
+        int lineCount = layout.getLineCount();
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (count * 3 + lineCount * 3 + 1) * 4);
+        buffer.putInt(MAGIC);
+        buffer.putLong(contentHash);
+        buffer.putLong(environmentHash);
+        buffer.putInt(params.getTextSize());
+        buffer.putInt(params.getPinyinTextSize());
+        buffer.putInt(params.getHorizontalSpacing());
+        buffer.putInt(params.getVerticalSpacing());
+        buffer.putInt(layout.getAvailableWidth());
+        buffer.putInt(count);
+        buffer.putInt(count == 0 ? 0 : text.getTextStart(count - 1) + text.getTextLength(count - 1));
+        buffer.putInt(count == 0 ? 0 : text.getPinyinStart(count - 1) + text.getPinyinLength(count - 1));
+        buffer.putInt(text.getTextHeight());
+        buffer.putInt(text.getPinyinHeight());
+        buffer.putInt(text.getPinyinDescent());
+        buffer.putInt(lineCount);
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(text.getTextWidth(i));
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(text.getPinyinWidth(i));
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(layout.getItemLeft(i));
+        }
+        for (int line = 0; line < lineCount; line++) {
+            buffer.putInt(layout.getLineTop(line));
+        }
+        for (int line = 0; line < lineCount; line++) {
+            buffer.putInt(layout.getLineWidth(line));
+        }
+        for (int line = 0; line <= lineCount; line++) {
+            buffer.putInt(line < lineCount ? layout.getLineStart(line) : count);
+        }
+
+        // write a temp file and rename it, so readers never see a partial file
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs() && !mDirectory.isDirectory()) {
+            throw new IOException("Can't create " + mDirectory);
+        }
+        File temp = File.createTempFile("layout", ".tmp", mDirectory);
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(buffer.array());
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Can't rename " + temp + " to " + file);
+        }
+    }
+
+    // delete least recently used files until the directory is not larger than the max size
+    private synchronized void trim() {
+        File[] files = listFiles();
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= mMaxBytes) {
+            return;
+        }
+
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long diff = lastModified[a] - lastModified[b];
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < order.length && size > mMaxBytes; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private File[] listFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        File[] layoutFiles = new File[count]; // Arrays.copyOf needs API 9
+        System.arraycopy(files, 0, layoutFiles, 0, count);
+        return layoutFiles;
+    }
+
+    /**
+     * Delete all saved layouts.
+     */
+    public synchronized void clear() {
+        for (File file : listFiles()) {
+            file.delete();
+        }
+    }
+
+    /**
+     * @return number of layouts restored from the cache.
+     */
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return number of layouts measured because they were not in the cache.
+     */
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    private static String getFileName(long contentHash, long environmentHash, PrecomputedPinyinText.Params params,
+                                      int width) {
+        long key = contentHash;
+        key = 31 * key + environmentHash;
+        key = 31 * key + params.getTextSize();
+        key = 31 * key + params.getPinyinTextSize();
+        key = 31 * key + params.getHorizontalSpacing();
+        key = 31 * key + params.getVerticalSpacing();
+        key = 31 * key + width;
+        return Long.toHexString(key) + SUFFIX;
+    }
+
+    // 64-bit FNV-1a of text, pinyin and where each item starts
+    private static long hash(PrecomputedPinyinText.Content content) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, content.mText, content.mTextStarts[content.mCount]);
+        hash = hash(hash, content.mPinyin, content.mPinyinStarts[content.mCount]);
+        for (int i = 0; i <= content.mCount; i++) {
+            hash = (hash ^ content.mTextStarts[i]) * 0x100000001b3L;
+            hash = (hash ^ content.mPinyinStarts[i]) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // fonts may change with the system build
+    private static long hashEnvironment(String typefaceName) {
+        return hash(typefaceName + '\0' + Build.FINGERPRINT);
+    }
+
+    private static long hash(String string) {
+        return hash(0xcbf29ce484222325L, string.toCharArray(), string.length());
+    }
+
+    private static long hash(long hash, char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ chars[i]) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
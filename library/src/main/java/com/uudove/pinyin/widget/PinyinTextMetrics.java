@@ -0,0 +1,183 @@
+package com.uudove.pinyin.widget;
+
+/**
+ * Counts and time spent in the hot paths of one {@link PinyinTextView}, collected only while a
+ * {@link PinyinTextView.OnMetricsListener} is set. All values add up from the last {@link #reset()}, times are in
+ * nanoseconds.
+ * <ul>
+ * <li>measure: {@link android.view.View#onMeasure(int, int)}, including line breaking.</li>
+ * <li>line break: breaking items into lines for a new width. A measure with the same width reuses the lines.</li>
+ * <li>precompute: measuring widths and heights of new items, when text or text style is set.</li>
+ * <li>draw: {@link android.view.View#onDraw(android.graphics.Canvas)}, and how many items were drawn or culled
+ * because they were outside the clip.</li>
+ * </ul>
+ * Methods must be called on the main thread.
+ *
+ * @author wangjingtao
+ */
+public final class PinyinTextMetrics {
+
+    int measureCount;
+    long measureNanos;
+
+    int lineBreakCount;
+    int lineBreakReuseCount;
+    long lineBreakNanos;
+
+    int precomputeCount;
+    long precomputeNanos;
+
+    // TextWidthCache lookups while precomputing
+    long widthCacheHitCount;
+    long widthCacheMissCount;
+
+    int drawCount;
+    long drawNanos;
+    long drawnItemCount;
+    long culledItemCount;
+    int lastDrawnItemCount;
+    int lastCulledItemCount;
+
+    int renderCacheHitCount;
+    int renderCacheMissCount;
+
+    PinyinTextMetrics() {
+    }
+
+    /**
+     * Set all counts and times to 0.
+     */
+    public void reset() {
+        measureCount = 0;
+        measureNanos = 0;
+        lineBreakCount = 0;
+        lineBreakReuseCount = 0;
+        lineBreakNanos = 0;
+        precomputeCount = 0;
+        precomputeNanos = 0;
+        widthCacheHitCount = 0;
+        widthCacheMissCount = 0;
+        drawCount = 0;
+        drawNanos = 0;
+        drawnItemCount = 0;
+        culledItemCount = 0;
+        lastDrawnItemCount = 0;
+        lastCulledItemCount = 0;
+        renderCacheHitCount = 0;
+        renderCacheMissCount = 0;
+    }
+
+    public int getMeasureCount() {
+        return measureCount;
+    }
+
+    public long getMeasureNanos() {
+        return measureNanos;
+    }
+
+    /**
+     * @return number of times lines were broken for a new width.
+     */
+    public int getLineBreakCount() {
+        return lineBreakCount;
+    }
+
+    /**
+     * @return number of measures which reused the lines of the last one.
+     */
+    public int getLineBreakReuseCount() {
+        return lineBreakReuseCount;
+    }
+
+    public long getLineBreakNanos() {
+        return lineBreakNanos;
+    }
+
+    public int getPrecomputeCount() {
+        return precomputeCount;
+    }
+
+    public long getPrecomputeNanos() {
+        return precomputeNanos;
+    }
+
+    /**
+     * @return hits of the process wide text width cache while this view precomputed, other threads measuring at
+     * the same time are counted too.
+     */
+    public long getWidthCacheHitCount() {
+        return widthCacheHitCount;
+    }
+
+    public long getWidthCacheMissCount() {
+        return widthCacheMissCount;
+    }
+
+    /**
+     * @return hit rate of the text width cache from 0 to 1, 0 if nothing was measured.
+     */
+    public float getWidthCacheHitRate() {
+        long total = widthCacheHitCount + widthCacheMissCount;
+        return total == 0 ? 0 : (float) widthCacheHitCount / total;
+    }
+
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    public long getDrawNanos() {
+        return drawNanos;
+    }
+
+    /**
+     * @return number of items drawn, added up over all draws.
+     */
+    public long getDrawnItemCount() {
+        return drawnItemCount;
+    }
+
+    /**
+     * @return number of items skipped because they were outside the clip, added up over all draws.
+     */
+    public long getCulledItemCount() {
+        return culledItemCount;
+    }
+
+    public int getLastDrawnItemCount() {
+        return lastDrawnItemCount;
+    }
+
+    public int getLastCulledItemCount() {
+        return lastCulledItemCount;
+    }
+
+    /**
+     * @return number of draws from the render cache without drawing content, see
+     * {@link PinyinTextView#setRenderCacheEnabled(boolean)}.
+     */
+    public int getRenderCacheHitCount() {
+        return renderCacheHitCount;
+    }
+
+    public int getRenderCacheMissCount() {
+        return renderCacheMissCount;
+    }
+
+    @Override
+    public String toString() {
+        return "PinyinTextMetrics{"
+                + "measure " + measureCount + " in " + millis(measureNanos) + " ms"
+                + ", line break " + lineBreakCount + " in " + millis(lineBreakNanos) + " ms"
+                + " (reused " + lineBreakReuseCount + ")"
+                + ", precompute " + precomputeCount + " in " + millis(precomputeNanos) + " ms"
+                + " (width cache hit rate " + Math.round(getWidthCacheHitRate() * 100) + "%)"
+                + ", draw " + drawCount + " in " + millis(drawNanos) + " ms"
+                + " (items drawn " + drawnItemCount + ", culled " + culledItemCount + ")"
+                + ", render cache hit " + renderCacheHitCount + ", miss " + renderCacheMissCount
+                + "}";
+    }
+
+    static String millis(long nanos) {
+        return String.valueOf(Math.round(nanos / 10000.0) / 100.0);
+    }
+}
@@ -1,14 +1,29 @@
 package com.uudove.pinyin.widget;
 
-import java.util.ArrayList;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.PorterDuff;
 import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.Trace;
+import android.text.BoringLayout;
 import android.text.Layout;
 import android.text.Layout.Alignment;
 import android.text.StaticLayout;
@@ -18,7 +33,13 @@ import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.Pair;
 import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
 import android.view.View;
+import android.view.ViewConfiguration;
+
+import com.uudove.pinyin.dict.PhraseDictionary;
+import com.uudove.pinyin.dict.PinyinDictionary;
 
 /**
  * Displays pinyin and text to the user.<br/>
@@ -51,9 +72,19 @@ public class PinyinTextView extends View {
      */
     private int mDrawType = TYPE_PLAIN_TEXT;
 
-    private static final float PINYIN_TEXT_SIZE_RADIO = 0.8F;
+    static final float PINYIN_TEXT_SIZE_RADIO = 0.8F;
+
+    /**
+     * Default max size of the render cache, see {@link #setRenderCacheMaxBytes(int)}.
+     */
+    public static final int DEFAULT_RENDER_CACHE_MAX_BYTES = 4 * 1024 * 1024;
 
-    private static final int[] ATTRS = {android.R.attr.textSize, android.R.attr.textColor,
+    // converts & measures hanzi text of all views, one text at a time
+    private static Executor sHanziTextExecutor;
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    static final int[] ATTRS = {android.R.attr.textSize, android.R.attr.textColor,
             android.R.attr.textColorHint, android.R.attr.horizontalSpacing, android.R.attr.verticalSpacing};
 
     /**
@@ -79,6 +110,12 @@ public class PinyinTextView extends View {
      */
     private int mPinyinTextColor;
 
+    // items [mHighlightStart, mHighlightEnd) are drawn in highlight colors, see setHighlight
+    private int mHighlightStart;
+    private int mHighlightEnd;
+    private int mHighlightTextColor;
+    private int mHighlightPinyinTextColor;
+
     /**
      * line spacing (between text and pinyin)<br/>
      * Def attr in xml <b>android:horizontalSpacing=""</b>
@@ -91,34 +128,114 @@ public class PinyinTextView extends View {
      */
     private int mVerticalSpacing;
 
-    /**
-     * line spacing (between pinyin and text). Equals {@link #mHorizontalSpacing} / 2.
-     */
-    private int mPinyinTextSpacing;
+    // auto size text sizes in pixels, mAutoSizeStepGranularity is 0 if auto size is off
+    private int mAutoSizeMinTextSize;
+    private int mAutoSizeMaxTextSize;
+    private int mAutoSizeStepGranularity;
 
-    // text & pinyin string
+    // plain text string
     private String mTextString;
-    private String mPinyinString;
 
-    // calculated height of text or pinyin
-    private int mTextHeight;
-    private int mPinyinHeight;
+    // Pinyin data, measured with current params. Line breaking result is reused while the available width doesn't
+    // change.
+    private PrecomputedPinyinText mPinyinText;
+
+    // increased when content is set, a pending setHanziText result is dropped if this changed
+    private final AtomicInteger mContentGeneration = new AtomicInteger();
 
-    // Pinyin data
-    private List<PinyinCompat> mPinyinCompats = new ArrayList<PinyinCompat>();
+    // executor of setHanziText, null for the shared one
+    private Executor mHanziTextExecutor;
+    private PinyinLayoutCache mLayoutCache;
 
-    // text & pinyin paint
+    // width available for pinyin & text at the last measure, NO_WIDTH if not measured or unlimited
+    private int mAvailableWidth = PrecomputedPinyinText.NO_WIDTH;
+
+    // paint to measure text & pinyin, and draw plain text
     private TextPaint mPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.LINEAR_TEXT_FLAG);
 
-    // bounds
-    private Rect mBounds = new Rect();
+    // paints to draw text & pinyin, always set to the current size & color
+    private TextPaint mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.LINEAR_TEXT_FLAG);
+    private TextPaint mPinyinPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.LINEAR_TEXT_FLAG);
+
+    // clip bounds of canvas while drawing
+    private Rect mClipBounds = new Rect();
+
+    // area changed by the last replacePinyinText, {left, top, right, bottom}
+    private final int[] mDirty = new int[4];
 
-    // for draw plain text
-    private StaticLayout mStaticLayout;
+    // for draw plain text, a BoringLayout if the text fits in one simple line, else a StaticLayout. Reused until
+    // text, text size or width changes
+    private Layout mPlainLayout;
+    private BoringLayout.Metrics mBoringMetrics; // null if the text is not boring
+    private int mPlainDesiredWidth = -1; // -1 if not measured
+    private int mPlainTextSize; // text size of the layout & measurements
+
+    // render cache, see setRenderCacheEnabled
+    private boolean mRenderCacheEnabled;
+
+    // measure and break lines on the shared layout pool too
+    private boolean mParallelLayoutEnabled;
+    private int mRenderCacheMaxBytes = DEFAULT_RENDER_CACHE_MAX_BYTES;
+    private Bitmap mRenderCache;
+    private boolean mRenderCacheDirty = true;
+    private final Rect mRenderCacheDirtyRect = new Rect(); // rendered again if only this area changed
+    private int mRenderCachePaddingLeft;
+    private int mRenderCachePaddingTop;
+    private Canvas mRenderCanvas; // draws into mRenderCache, created with it
+
+    // draw pinyin from the shared glyph atlas, see setPinyinAtlasEnabled
+    private boolean mPinyinAtlasEnabled;
+
+    // measurements of detached views are released first on low memory
+    private boolean mAttachedToWindow;
 
     private boolean debugDraw = false; //  for debug, set false when release
     private Paint mDebugPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
 
+    // metrics, null unless a listener is set
+    private PinyinTextMetrics mMetrics;
+    private OnMetricsListener mMetricsListener;
+
+    // item click, mItemTouch is true while a touch that started on an item is tracked, mPressedItem is -1 once it
+    // moved too far to be a tap
+    private OnItemClickListener mItemClickListener;
+    private boolean mItemTouch;
+    private int mPressedItem = -1;
+    private float mDownX;
+    private float mDownY;
+    private Rect mItemBounds = new Rect();
+
+    // width cache counts when precomputing started
+    private int mWidthCacheHitStart;
+    private int mWidthCacheMissStart;
+
+    /**
+     * Receives metrics of a view, see {@link #setMetricsListener(OnMetricsListener)}.
+     */
+    public interface OnMetricsListener {
+        /**
+         * Called on the main thread after the view is drawn.
+         *
+         * @param view    the view.
+         * @param metrics metrics of the view since the last reset. Only valid during the call, don't keep it.
+         */
+        void onMetrics(PinyinTextView view, PinyinTextMetrics metrics);
+    }
+
+    /**
+     * Receives taps on Text-Pinyin items, see {@link #setOnItemClickListener(OnItemClickListener)}.
+     */
+    public interface OnItemClickListener {
+        /**
+         * Called on the main thread when an item is tapped.
+         *
+         * @param view   the view.
+         * @param item   index of the item.
+         * @param bounds bounds of the item in view coordinates. Only valid during the call, copy it to keep it.
+         */
+        void onItemClick(PinyinTextView view, int item, Rect bounds);
+    }
+
     public PinyinTextView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
         init(context, attrs);
@@ -141,6 +258,11 @@ public class PinyinTextView extends View {
 
         initDefault(); // initialize default value
 
+        // release measurements when memory is low, see onTrimMemory
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            TrimMemoryCallbacks.register(context, this);
+        }
+
         if (attrs == null) {
             return;
         }
@@ -153,11 +275,18 @@ public class PinyinTextView extends View {
         mVerticalSpacing = a.getDimensionPixelSize(4, mVerticalSpacing);
         a.recycle();
 
-        mPinyinTextSpacing = mHorizontalSpacing / 2; // half of line spacing
-
+        updatePaints();
         setTextSize(mTextSize);
     }
 
+    // set current size & color to the text & pinyin paints
+    private void updatePaints() {
+        mTextPaint.setTextSize(mTextSize);
+        mTextPaint.setColor(mTextColor);
+        mPinyinPaint.setTextSize(mPinyinTextSize);
+        mPinyinPaint.setColor(mPinyinTextColor);
+    }
+
     private void initDefault() {
         Context c = getContext();
         Resources r;
@@ -177,14 +306,18 @@ public class PinyinTextView extends View {
         // spacing
         mHorizontalSpacing = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 5, dm);
         mVerticalSpacing = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 5, dm);
-        mPinyinTextSpacing = mHorizontalSpacing / 2;
 
         // set default text color
         mTextColor = 0xff333333;
         mPinyinTextColor = 0xff999999;
         // mPinyinTextColor = 0xffff0000;
+        mHighlightTextColor = 0xffff6600;
+        mHighlightPinyinTextColor = 0xffff6600;
 
         mPaint.setStyle(Paint.Style.FILL);
+        mTextPaint.setStyle(Paint.Style.FILL);
+        mPinyinPaint.setStyle(Paint.Style.FILL);
+        updatePaints();
         mDebugPaint.setStyle(Paint.Style.STROKE);
     }
 
@@ -199,6 +332,7 @@ public class PinyinTextView extends View {
             throw new IllegalArgumentException("Text size must larger than 2px");
         }
         mTextSize = px;
+        mTextPaint.setTextSize(px);
 
         setPinyinTextSize((int) (px * PINYIN_TEXT_SIZE_RADIO));
     }
@@ -223,15 +357,51 @@ public class PinyinTextView extends View {
      */
     public void setPinyinTextSize(int px) {
         mPinyinTextSize = px;
+        mPinyinPaint.setTextSize(px);
         if (mPinyinTextSize <= 0) {
             throw new IllegalArgumentException("Pinyin text size must larger than 1px");
         }
 
-        // calculate text & pinyin height
-        calTextHeight();
+        updatePinyinTextParams();
+        requestLayout();
+        invalidateContent();
+    }
 
+    /**
+     * Scale pinyin and text to the largest size from minTextSize to maxTextSize, in steps of stepGranularity, at
+     * which all content fits in the view. Pinyin size is {@value #PINYIN_TEXT_SIZE_RADIO} of the text size.<br/>
+     * The size is chosen when the view is measured with a limited width and height, for example a fixed size card.
+     * Item widths measured at the current size are scaled to try sizes, so fitting takes a few passes over item
+     * widths and one measure at the chosen size. Only applies to pinyin and text, not plain text.
+     *
+     * @param minTextSize     min text size in pixels.
+     * @param maxTextSize     max text size in pixels.
+     * @param stepGranularity step between two text sizes to try, in pixels.
+     */
+    public void setAutoSizeTextConfiguration(int minTextSize, int maxTextSize, int stepGranularity) {
+        if (minTextSize < 2 || maxTextSize < minTextSize || stepGranularity <= 0) {
+            throw new IllegalArgumentException("Invalid auto size text configuration: min " + minTextSize + ", max "
+                    + maxTextSize + ", step " + stepGranularity);
+        }
+        mAutoSizeMinTextSize = minTextSize;
+        mAutoSizeMaxTextSize = maxTextSize;
+        mAutoSizeStepGranularity = stepGranularity;
         requestLayout();
-        invalidate();
+        invalidateContent();
+    }
+
+    /**
+     * Stop auto sizing text. The text size stays the last size chosen.
+     */
+    public void disableAutoSizeText() {
+        mAutoSizeStepGranularity = 0;
+    }
+
+    /**
+     * @return whether text is auto sized, see {@link #setAutoSizeTextConfiguration(int, int, int)}.
+     */
+    public boolean isAutoSizeText() {
+        return mAutoSizeStepGranularity > 0;
     }
 
     /**
@@ -242,7 +412,8 @@ public class PinyinTextView extends View {
      */
     public void setTextColor(int color) {
         mTextColor = color;
-        invalidate();
+        mTextPaint.setColor(color);
+        invalidateContent();
     }
 
     /**
@@ -253,7 +424,70 @@ public class PinyinTextView extends View {
      */
     public void setPinyinTextColor(int color) {
         mPinyinTextColor = color;
-        invalidate();
+        mPinyinPaint.setColor(color);
+        invalidateContent();
+    }
+
+    /**
+     * Highlight items [start, end), like the words being read aloud or sung. Only the colors of the items change,
+     * lines are not broken again, and only the items whose highlight changed are drawn again, so it can be moved
+     * every frame. Items past the last one are ignored. The highlight is cleared when the text is set again, and
+     * follows its items when items are appended, removed or replaced before or in it. Replaced items are not
+     * highlighted anymore, items inserted inside the highlight are.
+     *
+     * @param start first item to highlight.
+     * @param end   item after the last item to highlight, equals start to clear the highlight.
+     */
+    public void setHighlight(int start, int end) {
+        if (start < 0 || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end);
+        }
+        int oldStart = mHighlightStart;
+        int oldEnd = mHighlightEnd;
+        mHighlightStart = start;
+        mHighlightEnd = end;
+
+        if (oldStart == oldEnd || start == end || oldEnd <= start || end <= oldStart) {
+            invalidateItems(oldStart, oldEnd);
+            invalidateItems(start, end);
+        } else {
+            // the ranges overlap, only items at either end changed
+            invalidateItems(Math.min(oldStart, start), Math.max(oldStart, start));
+            invalidateItems(Math.min(oldEnd, end), Math.max(oldEnd, end));
+        }
+    }
+
+    /**
+     * Clear the highlight, see {@link #setHighlight(int, int)}.
+     */
+    public void clearHighlight() {
+        setHighlight(0, 0);
+    }
+
+    /**
+     * Get the first highlighted item, see {@link #setHighlight(int, int)}.
+     */
+    public int getHighlightStart() {
+        return mHighlightStart;
+    }
+
+    /**
+     * Get the item after the last highlighted item, see {@link #setHighlight(int, int)}.
+     */
+    public int getHighlightEnd() {
+        return mHighlightEnd;
+    }
+
+    /**
+     * Set colors of highlighted items, see {@link #setHighlight(int, int)}.
+     *
+     * @param textColor       text color of highlighted items.
+     * @param pinyinTextColor pinyin text color of highlighted items.
+     */
+    public void setHighlightColors(int textColor, int pinyinTextColor) {
+        mHighlightTextColor = textColor;
+        mHighlightPinyinTextColor = pinyinTextColor;
+        invalidateItems(mHighlightStart, mHighlightEnd);
     }
 
     /**
@@ -276,9 +510,9 @@ public class PinyinTextView extends View {
      */
     public void setHorizontalSpacing(int px) {
         mHorizontalSpacing = px;
-        mPinyinTextSpacing = mHorizontalSpacing / 2; // half of line spacing
+        updatePinyinTextParams();
         requestLayout();
-        invalidate();
+        invalidateContent();
     }
 
     /**
@@ -289,8 +523,9 @@ public class PinyinTextView extends View {
      */
     public void setVerticalSpacing(int px) {
         mVerticalSpacing = px;
+        updatePinyinTextParams();
         requestLayout();
-        invalidate();
+        invalidateContent();
     }
 
     /**
@@ -299,41 +534,383 @@ public class PinyinTextView extends View {
      * @param pinyinList Text-Pinyin pair.
      */
     public void setPinyinText(List<Pair<String, String>> pinyinList) {
-        mDrawType = TYPE_PINYIN_AND_TEXT; // set draw type
+        cancelHanziText();
+        long start = startPrecompute();
+        PrecomputedPinyinText pinyinText = PrecomputedPinyinText.create(pinyinList, getPinyinTextParams(), mPaint,
+                getLayoutExecutor());
+        endPrecompute(start);
+        setPinyinTextInternal(pinyinText);
+    }
 
-        clearAll(); // clear what is shown
+    /**
+     * Display pinyin and text given as two char sequences and the end of each item in them, without creating an
+     * object per item. See {@link PrecomputedPinyinText#create(CharSequence, int[], CharSequence, int[],
+     * PrecomputedPinyinText.Params, int)}.
+     *
+     * @param text       text of all items.
+     * @param textEnds   end of the text of each item in text, ascending.
+     * @param pinyin     pinyin of all items.
+     * @param pinyinEnds end of the pinyin of each item in pinyin, ascending.
+     *
+     * @throws IllegalArgumentException if the ends don't match the char sequences or each other.
+     */
+    public void setPinyinText(CharSequence text, int[] textEnds, CharSequence pinyin, int[] pinyinEnds) {
+        cancelHanziText();
+        long start = startPrecompute();
+        PrecomputedPinyinText pinyinText =
+                PrecomputedPinyinText.create(text, textEnds, pinyin, pinyinEnds, getPinyinTextParams(), mPaint,
+                        getLayoutExecutor());
+        endPrecompute(start);
+        setPinyinTextInternal(pinyinText);
+    }
 
-        StringBuilder textBuilder = new StringBuilder();
-        StringBuilder pinyinBuilder = new StringBuilder();
-        for (Pair<String, String> pair : pinyinList) {
-            String src = pair.first;
-            String trg = pair.second;
-            if (src == null) {
-                src = "";
-            }
-            if (trg == null) {
-                trg = "";
-            }
-            textBuilder.append(src);
-            pinyinBuilder.append(trg);
+    /**
+     * Display pinyin and text measured by {@link PrecomputedPinyinText#create(List, PrecomputedPinyinText.Params,
+     * int)}, which may be called on any thread.
+     *
+     * @param pinyinText precomputed pinyin and text.
+     *
+     * @throws IllegalArgumentException if pinyinText was measured with params other than
+     *                                  {@link #getPinyinTextParams()}.
+     */
+    public void setPrecomputedPinyinText(PrecomputedPinyinText pinyinText) {
+        if (!pinyinText.getParams().equals(getPinyinTextParams())) {
+            throw new IllegalArgumentException("PrecomputedPinyinText params " + pinyinText.getParams()
+                    + " don't match the view params " + getPinyinTextParams());
+        }
+        cancelHanziText();
+        setPinyinTextInternal(pinyinText);
+    }
+
+    /**
+     * Append pinyin and text to what is shown. Only the new items are measured and drawn again.
+     *
+     * @param pinyinList Text-Pinyin pair.
+     */
+    public void appendPinyinText(List<Pair<String, String>> pinyinList) {
+        int count = getPinyinItemCount();
+        replacePinyinText(count, count, pinyinList);
+    }
+
+    /**
+     * Remove items [start, end) of what is shown.
+     *
+     * @param start first item to remove.
+     * @param end   item after the last item to remove.
+     */
+    public void removePinyinText(int start, int end) {
+        replacePinyinText(start, end, Collections.<Pair<String, String>>emptyList());
+    }
+
+    /**
+     * Replace items [start, end) of what is shown by pinyinList. Only the new items are measured, lines are broken
+     * again from the line of the first changed item, and only the changed area is drawn again.
+     *
+     * @param start      first item to replace.
+     * @param end        item after the last item to replace.
+     * @param pinyinList Text-Pinyin pair.
+     */
+    public void replacePinyinText(int start, int end, List<Pair<String, String>> pinyinList) {
+        int count = getPinyinItemCount();
+        if (start < 0 || end > count || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", item count " + count);
+        }
+        cancelHanziText();
+        if (mDrawType != TYPE_PINYIN_AND_TEXT || mPinyinText == null) {
+            setPinyinText(pinyinList);
+            return;
+        }
+
+        ensurePinyinTextMeasured();
+        PinyinLayout oldLayout = mPinyinText.getLayout();
+        long precomputeStart = startPrecompute();
+        mPinyinText = mPinyinText.replace(start, end, pinyinList, mPaint, mDirty);
+        endPrecompute(precomputeStart);
+        PinyinLayout layout = mPinyinText.getLayout();
+        replaceHighlight(start, end, pinyinList.size());
+
+        if (oldLayout == null || layout == null) {
+            requestLayout();
+            invalidateContent();
+            return;
+        }
 
-            PinyinCompat compat = new PinyinCompat();
-            compat.text = src;
-            compat.pinyin = trg;
-            compat.textRect = new Rect();
-            compat.pinyinRect = new Rect();
-            mPinyinCompats.add(compat);
+        // measured size changes only if the height, the line count or the width of a single line changed
+        if (oldLayout.getHeight() != layout.getHeight()
+                || (oldLayout.getLineCount() > 1) != (layout.getLineCount() > 1)
+                || (layout.getLineCount() == 1 && oldLayout.getWidth() != layout.getWidth())) {
+            requestLayout();
         }
 
-        // string buffer
-        mTextString = textBuilder.toString();
-        mPinyinString = pinyinBuilder.toString();
+        int paddingLeft = this.getPaddingLeft();
+        int paddingTop = this.getPaddingTop();
+        invalidateContent(paddingLeft + mDirty[0], paddingTop + mDirty[1], paddingLeft + mDirty[2],
+                paddingTop + mDirty[3]);
+    }
 
-        // calculate text & pinyin height
-        calTextHeight();
+    // keep the highlight on its items after items [start, end) were replaced by insertedCount items. Replaced items
+    // lose it, items inserted inside the highlight get it. Nothing is drawn again: the highlighted items that moved
+    // or were removed are in the changed area
+    private void replaceHighlight(int start, int end, int insertedCount) {
+        int shift = insertedCount - (end - start);
+        int highlightStart = mHighlightStart < start ? mHighlightStart
+                : (mHighlightStart >= end ? mHighlightStart + shift : start + insertedCount);
+        int highlightEnd = mHighlightEnd <= start ? mHighlightEnd
+                : (mHighlightEnd >= end ? mHighlightEnd + shift : start);
+        if (highlightStart >= highlightEnd) {
+            highlightStart = 0;
+            highlightEnd = 0;
+        }
+        mHighlightStart = highlightStart;
+        mHighlightEnd = highlightEnd;
+    }
+
+    /**
+     * Display hanzi text with pinyin of the most common readings, see {@link #setHanziText(CharSequence,
+     * PinyinDictionary, PhraseDictionary)}.
+     *
+     * @param text       hanzi text.
+     * @param dictionary dictionary to convert text with.
+     */
+    public void setHanziText(CharSequence text, PinyinDictionary dictionary) {
+        setHanziText(text, dictionary, null);
+    }
+
+    /**
+     * Display hanzi text with pinyin. Text is converted by
+     * {@link PinyinDictionary#convert(CharSequence, PhraseDictionary)}, measured and broken into lines on a
+     * background thread, then displayed on the main thread; what is shown doesn't change until then.<br/>
+     * Only the last content set is displayed: a later call, or any other call setting content, cancels pending work
+     * that hasn't started and drops the result of work already running. So a view in a fast scrolling list can call
+     * this on every bind.
+     *
+     * @param text       hanzi text.
+     * @param dictionary dictionary to convert text with.
+     * @param phrases    dictionary to read polyphones by phrase with, or null.
+     */
+    public void setHanziText(CharSequence text, PinyinDictionary dictionary, PhraseDictionary phrases) {
+        int generation = mContentGeneration.incrementAndGet();
+        Executor executor = mHanziTextExecutor != null ? mHanziTextExecutor : getSharedHanziTextExecutor();
+        executor.execute(new HanziTextTask(this, generation, text.toString(), dictionary, phrases,
+                getPinyinTextParams(), mAvailableWidth, getLayoutExecutor(), mLayoutCache));
+    }
+
+    /**
+     * Cancel a pending {@link #setHanziText(CharSequence, PinyinDictionary, PhraseDictionary)}, e.g. when the view
+     * is recycled. What is shown doesn't change.
+     */
+    public void cancelHanziText() {
+        mContentGeneration.incrementAndGet();
+    }
+
+    /**
+     * Set the executor to convert and measure hanzi text on. By default, one background thread is shared by all
+     * views.
+     *
+     * @param executor executor, null for the shared one.
+     */
+    public void setHanziTextExecutor(Executor executor) {
+        mHanziTextExecutor = executor;
+    }
+
+    /**
+     * Set a persistent cache of laid out content for {@link #setHanziText(CharSequence, PinyinDictionary,
+     * PhraseDictionary)}. Text shown again at the same width and style, e.g. after a cold start, is then restored from
+     * disk on the background thread without measuring. Only used once the view has been measured, so the width is
+     * known.
+     *
+     * @param cache cache, null to measure every time.
+     */
+    public void setLayoutCache(PinyinLayoutCache cache) {
+        mLayoutCache = cache;
+    }
+
+    private static synchronized Executor getSharedHanziTextExecutor() {
+        if (sHanziTextExecutor == null) {
+            sHanziTextExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "PinyinTextView-hanzi");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sHanziTextExecutor;
+    }
+
+    // result of setHanziText, on the main thread
+    private void onHanziTextReady(PrecomputedPinyinText pinyinText) {
+        if (!pinyinText.getParams().equals(getPinyinTextParams())) { // style changed meanwhile
+            pinyinText = pinyinText.withParams(getPinyinTextParams(), mPaint, getLayoutExecutor());
+        }
+        setPinyinTextInternal(pinyinText);
+    }
+
+    /**
+     * Get the number of Text-Pinyin items shown.
+     *
+     * @return item count, 0 if showing plain text.
+     */
+    public int getPinyinItemCount() {
+        return mDrawType == TYPE_PINYIN_AND_TEXT && mPinyinText != null ? mPinyinText.getItemCount() : 0;
+    }
+
+    /**
+     * Receive taps on Text-Pinyin items, e.g. to pronounce the tapped hanzi. Taps outside items, and taps while
+     * showing plain text, are handled like any other view, so an {@link android.view.View.OnClickListener} still
+     * works.
+     *
+     * @param listener listener, null to stop receiving taps.
+     */
+    public void setOnItemClickListener(OnItemClickListener listener) {
+        mItemClickListener = listener;
+    }
+
+    /**
+     * Get the Text-Pinyin item at a position. Lines and the items in them are found by binary search, so this is
+     * cheap on long texts. Spacing between items and lines belongs to the nearest item.
+     *
+     * @param x x in view coordinates.
+     * @param y y in view coordinates.
+     *
+     * @return index of the item, -1 if there is no item at the position or the view is not laid out yet.
+     */
+    public int getItemAt(float x, float y) {
+        PinyinLayout layout = mDrawType == TYPE_PINYIN_AND_TEXT && mPinyinText != null ? mPinyinText.getLayout() : null;
+        if (layout == null || layout.getItemCount() == 0) {
+            return -1;
+        }
+        int horizontal = (int) x - getPaddingLeft();
+        int vertical = (int) y - getPaddingTop();
+
+        // half of the spacing around each line and item is part of it
+        int halfLineSpacing = mHorizontalSpacing / 2;
+        int halfItemSpacing = mVerticalSpacing / 2;
+
+        int line = layout.getLineForVertical(vertical + halfLineSpacing);
+        int lineBottom = layout.getLineBottom(line) + Math.max(layout.getTextHeight() / 4, halfLineSpacing);
+        if (vertical < layout.getLineTop(line) - halfLineSpacing || vertical >= lineBottom) {
+            return -1;
+        }
+
+        int item = layout.getItemForHorizontal(line, horizontal + halfItemSpacing);
+        int left = layout.getItemLeft(item);
+        if (horizontal < left - halfItemSpacing || horizontal >= left + getItemWidth(item) + halfItemSpacing) {
+            return -1;
+        }
+        return item;
+    }
+
+    /**
+     * Get the bounds of a Text-Pinyin item, from the top of pinyin to the bottom of text.
+     *
+     * @param item   index of the item.
+     * @param bounds set to the bounds in view coordinates.
+     *
+     * @return false if the item doesn't exist or the view is not laid out yet, bounds is not changed then.
+     */
+    public boolean getItemBounds(int item, Rect bounds) {
+        PinyinLayout layout = mDrawType == TYPE_PINYIN_AND_TEXT && mPinyinText != null ? mPinyinText.getLayout() : null;
+        if (layout == null || item < 0 || item >= layout.getItemCount()) {
+            return false;
+        }
+        int line = layout.getLineForItem(item);
+        int left = getPaddingLeft() + layout.getItemLeft(item);
+        int top = getPaddingTop() + layout.getLineTop(line);
+        int bottom = getPaddingTop() + layout.getLineBottom(line) + layout.getTextHeight() / 4;
+        bounds.set(left, top, left + getItemWidth(item), bottom);
+        return true;
+    }
+
+    private int getItemWidth(int item) {
+        return Math.max(mPinyinText.getTextWidth(item), mPinyinText.getPinyinWidth(item));
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN) {
+            mItemTouch = mItemClickListener != null && isEnabled();
+            mPressedItem = mItemTouch ? getItemAt(event.getX(), event.getY()) : -1;
+            mItemTouch = mPressedItem >= 0;
+            mDownX = event.getX();
+            mDownY = event.getY();
+        }
+        if (!mItemTouch) { // not started on an item
+            return super.onTouchEvent(event);
+        }
+
+        switch (action) {
+            case MotionEvent.ACTION_MOVE:
+                int touchSlop = ViewConfiguration.get(getContext()).getScaledTouchSlop();
+                if (Math.abs(event.getX() - mDownX) > touchSlop || Math.abs(event.getY() - mDownY) > touchSlop) {
+                    mPressedItem = -1; // moved away, not a tap
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                int item = mPressedItem;
+                mPressedItem = -1;
+                mItemTouch = false;
+                if (item >= 0 && mItemClickListener != null && getItemBounds(item, mItemBounds)) {
+                    playSoundEffect(SoundEffectConstants.CLICK);
+                    mItemClickListener.onItemClick(this, item, mItemBounds);
+                }
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                mPressedItem = -1;
+                mItemTouch = false;
+                break;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * Get the params to measure text with, for {@link PrecomputedPinyinText#create(List,
+     * PrecomputedPinyinText.Params, int)}.
+     *
+     * @return current text style of this view.
+     */
+    public PrecomputedPinyinText.Params getPinyinTextParams() {
+        return new PrecomputedPinyinText.Params(mTextSize, mPinyinTextSize, mHorizontalSpacing, mVerticalSpacing,
+                mPaint.getTypeface());
+    }
+
+    private void setPinyinTextInternal(PrecomputedPinyinText pinyinText) {
+        mDrawType = TYPE_PINYIN_AND_TEXT; // set draw type
+
+        clearAll(); // clear what is shown
+
+        mPinyinText = pinyinText;
 
         requestLayout();
-        invalidate();
+        invalidateContent();
+    }
+
+    // measure pinyin data again if measurements were released on low memory
+    private void ensurePinyinTextMeasured() {
+        if (mPinyinText != null && !mPinyinText.isMeasured()) {
+            long start = startPrecompute();
+            mPinyinText = mPinyinText.measured(mPaint, getLayoutExecutor());
+            endPrecompute(start);
+        }
+    }
+
+    // measure pinyin data again after params changed
+    private void updatePinyinTextParams() {
+        if (mPinyinText != null) {
+            long start = startPrecompute();
+            mPinyinText = mPinyinText.withParams(getPinyinTextParams(), mPaint, getLayoutExecutor());
+            endPrecompute(start);
+        }
     }
 
     /**
@@ -342,6 +919,7 @@ public class PinyinTextView extends View {
      * @param text plain text to display.
      */
     public void setText(String text) {
+        cancelHanziText();
         mDrawType = TYPE_PLAIN_TEXT; // set draw type
 
         clearAll();
@@ -349,7 +927,7 @@ public class PinyinTextView extends View {
         this.mTextString = text;
 
         requestLayout();
-        invalidate();
+        invalidateContent();
     }
 
     /**
@@ -359,54 +937,269 @@ public class PinyinTextView extends View {
      */
     public void setDebugDraw(boolean debugDraw) {
         this.debugDraw = debugDraw;
+        invalidateContent();
     }
 
-    private void clearAll() {
-        mPinyinCompats.clear(); // clear
+    /**
+     * Collect counts and time spent measuring, breaking lines and drawing, and report them after each draw. With
+     * {@link #setDebugDraw(boolean)}, the numbers are also drawn on the view. Sections of the same names show up in
+     * systrace on API 18 and above, with or without a listener.
+     *
+     * @param listener listener, null to stop collecting.
+     */
+    public void setMetricsListener(OnMetricsListener listener) {
+        mMetricsListener = listener;
+        if (listener == null) {
+            mMetrics = null;
+        } else if (mMetrics == null) {
+            mMetrics = new PinyinTextMetrics();
+        }
+        invalidate();
+    }
 
+    /**
+     * @return metrics collected since the listener was set, null if no listener is set.
+     */
+    public PinyinTextMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    private long startPrecompute() {
+        if (mMetrics == null) {
+            return 0;
+        }
+        TextWidthCache cache = TextWidthCache.getInstance();
+        mWidthCacheHitStart = cache.hitCount();
+        mWidthCacheMissStart = cache.missCount();
+        return System.nanoTime();
+    }
+
+    private void endPrecompute(long start) {
+        if (mMetrics == null) {
+            return;
+        }
+        TextWidthCache cache = TextWidthCache.getInstance();
+        mMetrics.precomputeCount++;
+        mMetrics.precomputeNanos += System.nanoTime() - start;
+        mMetrics.widthCacheHitCount += cache.hitCount() - mWidthCacheHitStart;
+        mMetrics.widthCacheMissCount += cache.missCount() - mWidthCacheMissStart;
+    }
+
+    private static void beginSection(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(name);
+        }
+    }
+
+    private static void endSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    private void clearAll() {
+        mPinyinText = null;
         mTextString = null;
-        mPinyinString = null;
+        mPlainLayout = null;
+        mPlainDesiredWidth = -1;
+        mHighlightStart = 0;
+        mHighlightEnd = 0;
+    }
 
-        mTextHeight = 0;
-        mPinyinHeight = 0;
+    /**
+     * Set whether to measure items and break paragraphs into lines on several threads, for long texts such as a
+     * whole lesson. Paragraphs end at hard breaks (items whose text ends with '\n'), and results are the same as on
+     * one thread. The calling thread takes part and waits for a pool shared by all views, with a thread per core.
+     * Texts shorter than a thousand items are done on the calling thread only.
+     *
+     * @param enabled whether to lay out on several threads.
+     */
+    public void setParallelLayoutEnabled(boolean enabled) {
+        mParallelLayoutEnabled = enabled;
     }
 
-    // calculate text & pinyin height
-    private void calTextHeight() {
-        // calculate text height
-        if (!TextUtils.isEmpty(mTextString)) {
-            mPaint.setTextSize(mTextSize);
-            mPaint.getTextBounds(mTextString, 0, mTextString.length(), mBounds);
-            mTextHeight = mBounds.height();
-        } else {
-            mTextHeight = 0;
+    public boolean isParallelLayoutEnabled() {
+        return mParallelLayoutEnabled;
+    }
+
+    /**
+     * Set whether to draw pinyin from a bitmap atlas of the syllables in use, instead of drawing the text of every
+     * item on every draw. Syllables are rendered once per pinyin text style, and the atlas is shared by all views and
+     * colors. Hanzi are drawn as text either way.<br/>
+     * Helps dense texts on low-end devices. Pinyin wider than the widest syllable, and syllables added once the atlas
+     * is full, are drawn as text.
+     *
+     * @param enabled whether to draw pinyin from the atlas.
+     */
+    public void setPinyinAtlasEnabled(boolean enabled) {
+        if (mPinyinAtlasEnabled != enabled) {
+            mPinyinAtlasEnabled = enabled;
+            invalidateContent();
         }
+    }
 
-        // calculate pinyin height
-        if (!TextUtils.isEmpty(mPinyinString)) {
-            mPaint.setTextSize(mPinyinTextSize);
-            mPaint.getTextBounds(mPinyinString, 0, mPinyinString.length(), mBounds);
-            mPinyinHeight = mBounds.height();
-        } else {
-            mPinyinHeight = 0;
+    public boolean isPinyinAtlasEnabled() {
+        return mPinyinAtlasEnabled;
+    }
+
+    private Executor getLayoutExecutor() {
+        return mParallelLayoutEnabled ? ParallelPinyinLayout.getSharedExecutor() : null;
+    }
+
+    /**
+     * Set whether to draw content into a cached bitmap once, and draw the bitmap until content, style or size
+     * changes. Useful for static content redrawn because of animating siblings or parents. The cache is only used if
+     * it needs no more than {@link #setRenderCacheMaxBytes(int)} bytes, and released when the view is detached.
+     *
+     * @param enabled whether to cache rendered content.
+     */
+    public void setRenderCacheEnabled(boolean enabled) {
+        mRenderCacheEnabled = enabled;
+        if (!enabled) {
+            releaseRenderCache();
         }
+        invalidate();
+    }
+
+    /**
+     * Set max size of the render cache in bytes, default {@value #DEFAULT_RENDER_CACHE_MAX_BYTES}. A view larger
+     * than this is drawn without the cache.
+     *
+     * @param maxBytes max size of the render cache in bytes.
+     */
+    public void setRenderCacheMaxBytes(int maxBytes) {
+        mRenderCacheMaxBytes = maxBytes;
+        invalidate();
+    }
+
+    // content, style or size changed, draw again
+    private void invalidateContent() {
+        mRenderCacheDirty = true;
+        invalidate();
+    }
+
+    // part of the content changed, draw the area again and render only that area of the render cache again
+    private void invalidateContent(int left, int top, int right, int bottom) {
+        mRenderCacheDirtyRect.union(left, top, right, bottom);
+        invalidate(left, top, right, bottom);
+    }
+
+    // colors of items [start, end) changed, draw them again
+    private void invalidateItems(int start, int end) {
+        PinyinLayout layout = mDrawType == TYPE_PINYIN_AND_TEXT && mPinyinText != null ? mPinyinText.getLayout() : null;
+        end = layout != null ? Math.min(end, layout.getItemCount()) : start;
+        if (start >= end) {
+            return;
+        }
+
+        int firstLine = layout.getLineForItem(start);
+        int lastLine = layout.getLineForItem(end - 1);
+        int left = 0;
+        int right = layout.getWidth();
+        if (firstLine == lastLine) {
+            left = layout.getItemLeft(start);
+            right = layout.getItemLeft(end - 1) + getItemWidth(end - 1);
+        }
+
+        // glyphs may reach out of their advance, take half of the spacing around too
+        int halfLineSpacing = (mHorizontalSpacing + 1) / 2;
+        int halfItemSpacing = (mVerticalSpacing + 1) / 2;
+        int paddingLeft = this.getPaddingLeft();
+        int paddingTop = this.getPaddingTop();
+        invalidateContent(paddingLeft + left - halfItemSpacing,
+                paddingTop + layout.getLineTop(firstLine) - halfLineSpacing,
+                paddingLeft + right + halfItemSpacing,
+                paddingTop + layout.getLineBottom(lastLine) + Math.max(layout.getTextHeight() / 4, halfLineSpacing));
+    }
+
+    // the bitmap is not recycled, a display list recorded before may still draw it. It is collected once unused
+    private void releaseRenderCache() {
+        mRenderCache = null;
+        mRenderCanvas = null;
+        mRenderCacheDirty = true;
+        mRenderCacheDirtyRect.setEmpty();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mRenderCacheDirty = true;
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttachedToWindow = true;
+    }
+
+    // content is kept for when the view is attached again, like a page of a ViewPager. Only the render cache is
+    // released here, measurements are released on low memory
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
-        clearAll();
+        mAttachedToWindow = false;
+        releaseRenderCache();
+    }
+
+    /**
+     * Release what can be built again from the content when memory is low: the render cache once the UI is hidden,
+     * and measured widths and lines of detached views, or of all views once the app is in the background. Content
+     * is kept, and released data is built again when the view is measured.<br/>
+     * Called with the levels of {@link ComponentCallbacks2#onTrimMemory(int)} for all views on API 14 and later.
+     *
+     * @param level memory trim level, like {@link ComponentCallbacks2#TRIM_MEMORY_UI_HIDDEN}.
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            releaseRenderCache();
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || (!mAttachedToWindow && level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)) {
+            releaseMeasurements();
+        }
+    }
+
+    // release measured widths & lines, content is measured again on the next measure
+    private void releaseMeasurements() {
+        boolean released = false;
+        if (mPinyinText != null && mPinyinText.isMeasured()) {
+            mPinyinText = mPinyinText.withoutMeasurements();
+            released = true;
+        }
+        if (mPlainDesiredWidth >= 0) {
+            mPlainLayout = null;
+            mBoringMetrics = null;
+            mPlainDesiredWidth = -1;
+            released = true;
+        }
+        if (released) {
+            requestLayout();
+        }
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        if (mDrawType == TYPE_PINYIN_AND_TEXT && !mPinyinCompats.isEmpty()) {
+        beginSection("PinyinTextView#onMeasure");
+        long start = mMetrics != null ? System.nanoTime() : 0;
+
+        // remembered to break lines of setHanziText in the background
+        mAvailableWidth = MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED
+                ? PrecomputedPinyinText.NO_WIDTH
+                : Math.max(MeasureSpec.getSize(widthMeasureSpec) - getPaddingLeft() - getPaddingRight(), 0);
+
+        if (mDrawType == TYPE_PINYIN_AND_TEXT && mPinyinText != null && mPinyinText.getItemCount() > 0) {
             measurePinyinText(widthMeasureSpec, heightMeasureSpec);
         } else if (mDrawType == TYPE_PLAIN_TEXT && !TextUtils.isEmpty(mTextString)) {
             measurePlainText(widthMeasureSpec, heightMeasureSpec);
         } else {
             measureDefault(widthMeasureSpec, heightMeasureSpec);
         }
+
+        if (mMetrics != null) {
+            mMetrics.measureCount++;
+            mMetrics.measureNanos += System.nanoTime() - start;
+        }
+        endSection();
     }
 
     private void measureDefault(int widthMeasureSpec, int heightMeasureSpec) {
@@ -440,72 +1233,122 @@ public class PinyinTextView extends View {
         int modeWidth = MeasureSpec.getMode(widthMeasureSpec);
         int modeHeight = MeasureSpec.getMode(heightMeasureSpec);
 
-        // measured width and height
-        int measuredWidth = modeWidth == MeasureSpec.EXACTLY ? sizeWidth : 0;
-        int measuredHeight = modeHeight == MeasureSpec.EXACTLY ? sizeHeight : 0;
+        // no width limit if unspecified
+        int availableWidth = modeWidth == MeasureSpec.UNSPECIFIED ? Integer.MAX_VALUE : Math.max(sizeWidth, 0);
 
-        int line = 0;
-        int col = 0;
-        int lineLength = 0;
-        int baseLine = 0; // top of pinyin
-        boolean newLine = false;
+        if (mAutoSizeStepGranularity > 0 && modeWidth != MeasureSpec.UNSPECIFIED
+                && modeHeight != MeasureSpec.UNSPECIFIED) {
+            autoSizeText(availableWidth, Math.max(sizeHeight, 0));
+        }
 
-        for (PinyinCompat compat : mPinyinCompats) {
-            int textWidth = getTextWidth(compat.text, mTextSize);
-            int pinyinWidth = getTextWidth(compat.pinyin, mPinyinTextSize);
+        PinyinLayout layout = getPinyinLayout(availableWidth);
 
-            int maxWidth = Math.max(textWidth, pinyinWidth);
+        // measured width and height
+        int measuredWidth;
+        if (modeWidth == MeasureSpec.EXACTLY) {
+            measuredWidth = sizeWidth;
+        } else if (modeWidth == MeasureSpec.UNSPECIFIED) { // nothing wraps, as wide as the widest line
+            measuredWidth = layout.getWidth();
+        } else if (isSoftWrapped(layout)) { // wrapped, fill the max allowed width
+            measuredWidth = Math.max(sizeWidth, 0);
+        } else { // lines end only at hard breaks, as wide as the widest line
+            measuredWidth = Math.min(layout.getWidth(), Math.max(sizeWidth, 0));
+        }
 
-            if (newLine) {
-                line++;
-                col = 0;
-                newLine = false;
+        int measuredHeight;
+        if (modeHeight == MeasureSpec.EXACTLY) {
+            measuredHeight = sizeHeight;
+        } else {
+            measuredHeight = layout.getHeight();
+            if (modeHeight == MeasureSpec.AT_MOST && measuredHeight > sizeHeight) {
+                measuredHeight = sizeHeight;
             }
+        }
 
-            if (lineLength + maxWidth + (col == 0 ? 0 : mVerticalSpacing) > sizeWidth) { // new row
-                lineLength = maxWidth;
-
-                baseLine += mTextHeight + mPinyinHeight + mPinyinTextSpacing + mHorizontalSpacing;
+        setMeasuredDimension(measuredWidth + paddingLeft + paddingRight, measuredHeight + paddingTop + paddingBottom);
+    }
 
-                if (modeWidth != MeasureSpec.EXACTLY) {
-                    measuredWidth = sizeWidth;
-                }
+    // whether a line ends because the next item didn't fit, not at a hard break
+    private boolean isSoftWrapped(PinyinLayout layout) {
+        for (int line = 0; line < layout.getLineCount() - 1; line++) {
+            if (!mPinyinText.isHardBreak(layout.getLineEnd(line) - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                newLine = true;
+    // choose the largest auto size text size at which content fits
+    private void autoSizeText(int availableWidth, int availableHeight) {
+        ensurePinyinTextMeasured();
+        int min = mAutoSizeMinTextSize;
+        int step = mAutoSizeStepGranularity;
+        int sizeCount = (mAutoSizeMaxTextSize - min) / step + 1;
+
+        // height only grows with text size, binary search with scaled widths
+        int low = 1;
+        int high = sizeCount - 1;
+        int best = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int size = min + mid * step;
+            int height = mPinyinText.getScaledHeight(size, getAutoSizePinyinTextSize(size), availableWidth, mPaint);
+            if (height >= 0 && height <= availableHeight) {
+                best = mid;
+                low = mid + 1;
             } else {
-                if (col != 0 || line != 0) { // not the first item of first row
-                    lineLength += mVerticalSpacing;
-                }
-                lineLength += maxWidth;
+                high = mid - 1;
+            }
+        }
+        setAutoSizeTextSize(min + best * step);
 
-                if (modeWidth != MeasureSpec.EXACTLY && measuredWidth < lineLength) {
-                    measuredWidth = lineLength;
-                    if (measuredWidth > sizeWidth) {
-                        measuredWidth = sizeWidth;
-                    }
-                }
-                col++;
+        // scaled widths may be off by a pixel, step down if the measured content doesn't fit after all
+        while (best > 0) {
+            PinyinLayout layout = getPinyinLayout(availableWidth);
+            if (layout.getHeight() <= availableHeight && layout.getWidth() <= availableWidth) {
+                break;
             }
+            best--;
+            setAutoSizeTextSize(min + best * step);
+        }
+    }
 
-            compat.pinyinRect.left = lineLength - maxWidth;
-            compat.pinyinRect.right = compat.pinyinRect.left + pinyinWidth;
-            compat.pinyinRect.top = baseLine;
-            compat.pinyinRect.bottom = compat.pinyinRect.top + mPinyinHeight;
+    private static int getAutoSizePinyinTextSize(int textSize) {
+        return Math.max((int) (textSize * PINYIN_TEXT_SIZE_RADIO), 1);
+    }
 
-            compat.textRect.left = lineLength - maxWidth;
-            compat.textRect.right = compat.textRect.left + textWidth;
-            compat.textRect.top = compat.pinyinRect.bottom + mPinyinTextSpacing;
-            compat.textRect.bottom = compat.textRect.top + mTextHeight;
+    // set text size while measuring, measures content again only if the size changed
+    private void setAutoSizeTextSize(int textSize) {
+        if (textSize == mTextSize) {
+            return;
         }
+        mTextSize = textSize;
+        mPinyinTextSize = getAutoSizePinyinTextSize(textSize);
+        updatePaints();
+        updatePinyinTextParams();
+        invalidateContent();
+    }
 
-        if (modeHeight != MeasureSpec.EXACTLY) {
-            measuredHeight = baseLine + mPinyinHeight + mPinyinTextSpacing + mTextHeight + mTextHeight / 4;
-            if (measuredHeight > sizeHeight) {
-                measuredHeight = sizeHeight;
+    // get the layout for the available width, reuse the last one if possible
+    private PinyinLayout getPinyinLayout(int availableWidth) {
+        ensurePinyinTextMeasured();
+        PinyinLayout oldLayout = mPinyinText.getLayout();
+        if (oldLayout != null && oldLayout.getAvailableWidth() == availableWidth) {
+            if (mMetrics != null) {
+                mMetrics.lineBreakReuseCount++;
             }
+            return oldLayout;
         }
 
-        setMeasuredDimension(measuredWidth + paddingLeft + paddingRight, measuredHeight + paddingTop + paddingBottom);
+        beginSection("PinyinTextView#breakLines");
+        long start = mMetrics != null ? System.nanoTime() : 0;
+        mPinyinText = mPinyinText.withLayout(availableWidth, getLayoutExecutor());
+        if (mMetrics != null) {
+            mMetrics.lineBreakCount++;
+            mMetrics.lineBreakNanos += System.nanoTime() - start;
+        }
+        endSection();
+        return mPinyinText.getLayout();
     }
 
     private void measurePlainText(int widthMeasureSpec, int heightMeasureSpec) {
@@ -522,19 +1365,50 @@ public class PinyinTextView extends View {
         int modeWidth = MeasureSpec.getMode(widthMeasureSpec);
         int modeHeight = MeasureSpec.getMode(heightMeasureSpec);
 
-        // calculate text width and height
-        mPaint.setTextSize(mTextSize);
-        mStaticLayout = new StaticLayout(mTextString, mPaint, sizeWidth, Alignment.ALIGN_NORMAL, 1.0f, 0, false);
+        int desiredWidth = getPlainDesiredWidth();
+        int layoutWidth = modeWidth == MeasureSpec.UNSPECIFIED ? desiredWidth : Math.max(sizeWidth, 0);
+        Layout layout = getPlainLayout(layoutWidth);
 
         // measured width and height
-        int measuredWidth =
-                modeWidth == MeasureSpec.EXACTLY ? sizeWidth : Math.min(sizeWidth,
-                        (int) Math.ceil(Layout.getDesiredWidth(mTextString, mPaint)));
-        int measuredHeight = modeHeight == MeasureSpec.EXACTLY ? sizeHeight : mStaticLayout.getHeight();
+        int measuredWidth = modeWidth == MeasureSpec.EXACTLY ? sizeWidth : Math.min(layoutWidth, desiredWidth);
+        int measuredHeight = modeHeight == MeasureSpec.EXACTLY ? sizeHeight : layout.getHeight();
 
         setMeasuredDimension(measuredWidth + paddingLeft + paddingRight, measuredHeight + paddingTop + paddingBottom);
     }
 
+    // width of the text in one line, measured once for the text & text size
+    private int getPlainDesiredWidth() {
+        if (mPlainDesiredWidth < 0 || mPlainTextSize != mTextSize) {
+            mPlainTextSize = mTextSize;
+            mPlainLayout = null;
+            mPaint.setTextSize(mTextSize);
+            mBoringMetrics = BoringLayout.isBoring(mTextString, mPaint, mBoringMetrics);
+            mPlainDesiredWidth = mBoringMetrics != null ? mBoringMetrics.width
+                    : (int) Math.ceil(Layout.getDesiredWidth(mTextString, mPaint));
+        }
+        return mPlainDesiredWidth;
+    }
+
+    // layout of the text for the width, reused if the width didn't change
+    private Layout getPlainLayout(int width) {
+        if (mPlainLayout != null && mPlainLayout.getWidth() == width) {
+            return mPlainLayout;
+        }
+        mPaint.setTextSize(mTextSize);
+        if (mBoringMetrics != null && mBoringMetrics.width <= width) { // one line, like TextView
+            if (mPlainLayout instanceof BoringLayout) {
+                mPlainLayout = ((BoringLayout) mPlainLayout).replaceOrMake(mTextString, mPaint, width,
+                        Alignment.ALIGN_NORMAL, 1.0f, 0, mBoringMetrics, false);
+            } else {
+                mPlainLayout = BoringLayout.make(mTextString, mPaint, width, Alignment.ALIGN_NORMAL, 1.0f, 0,
+                        mBoringMetrics, false);
+            }
+        } else {
+            mPlainLayout = new StaticLayout(mTextString, mPaint, width, Alignment.ALIGN_NORMAL, 1.0f, 0, false);
+        }
+        return mPlainLayout;
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
@@ -542,6 +1416,50 @@ public class PinyinTextView extends View {
             return;
         }
 
+        beginSection("PinyinTextView#onDraw");
+        long start = mMetrics != null ? System.nanoTime() : 0;
+
+        if (!mRenderCacheEnabled || !drawRenderCache(canvas)) {
+            drawContent(canvas);
+        }
+
+        if (mMetrics != null) {
+            mMetrics.drawCount++;
+            mMetrics.drawNanos += System.nanoTime() - start;
+            if (debugDraw) {
+                drawMetrics(canvas);
+            }
+            mMetricsListener.onMetrics(this, mMetrics);
+        }
+        endSection();
+    }
+
+    // metrics overlay of debug draw, at the top left of the visible area
+    private void drawMetrics(Canvas canvas) {
+        if (!canvas.getClipBounds(mClipBounds)) {
+            return;
+        }
+        PinyinTextMetrics m = mMetrics;
+        String[] lines = {
+                "measure " + m.measureCount + " / " + PinyinTextMetrics.millis(m.measureNanos) + " ms"
+                        + ", line break " + m.lineBreakCount + " / " + PinyinTextMetrics.millis(m.lineBreakNanos)
+                        + " ms",
+                "precompute " + m.precomputeCount + " / " + PinyinTextMetrics.millis(m.precomputeNanos) + " ms"
+                        + ", width cache " + Math.round(m.getWidthCacheHitRate() * 100) + "%",
+                "draw " + m.drawCount + " / " + PinyinTextMetrics.millis(m.drawNanos) + " ms"
+                        + ", items " + m.lastDrawnItemCount + " drawn " + m.lastCulledItemCount + " culled",
+        };
+        mDebugPaint.setStyle(Paint.Style.FILL);
+        mDebugPaint.setColor(0xffff0000);
+        mDebugPaint.setTextSize(mTextSize * 0.6F);
+        float lineHeight = mTextSize * 0.75F;
+        for (int i = 0; i < lines.length; i++) {
+            canvas.drawText(lines[i], mClipBounds.left, mClipBounds.top + lineHeight * (i + 1), mDebugPaint);
+        }
+        mDebugPaint.setStyle(Paint.Style.STROKE);
+    }
+
+    private void drawContent(Canvas canvas) {
         if (mDrawType == TYPE_PINYIN_AND_TEXT) {
             drawPinyinAndText(canvas);
         } else if (mDrawType == TYPE_PLAIN_TEXT) {
@@ -549,61 +1467,221 @@ public class PinyinTextView extends View {
         }
     }
 
+    // draw content from the render cache, render it first if needed. Returns false if the cache can't be used
+    private boolean drawRenderCache(Canvas canvas) {
+        int width = getWidth();
+        int height = getHeight();
+        if (width <= 0 || height <= 0 || (long) width * height * 4 > mRenderCacheMaxBytes) {
+            releaseRenderCache();
+            return false;
+        }
+
+        if (mRenderCache == null || mRenderCache.getWidth() != width || mRenderCache.getHeight() != height
+                || mRenderCachePaddingLeft != getPaddingLeft() || mRenderCachePaddingTop != getPaddingTop()) {
+            releaseRenderCache();
+            mRenderCache = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mRenderCanvas = new Canvas(mRenderCache);
+            mRenderCachePaddingLeft = getPaddingLeft();
+            mRenderCachePaddingTop = getPaddingTop();
+        }
+
+        if (mMetrics != null) {
+            if (mRenderCacheDirty) {
+                mMetrics.renderCacheMissCount++;
+            } else {
+                mMetrics.renderCacheHitCount++;
+            }
+        }
+
+        if (mRenderCacheDirty) {
+            mRenderCache.eraseColor(Color.TRANSPARENT);
+            int count = mRenderCanvas.save();
+            drawContent(mRenderCanvas);
+            mRenderCanvas.restoreToCount(count);
+            mRenderCacheDirty = false;
+        } else if (!mRenderCacheDirtyRect.isEmpty()) {
+            // only part of the content changed, clear and render that area
+            int count = mRenderCanvas.save();
+            mRenderCanvas.clipRect(mRenderCacheDirtyRect);
+            mRenderCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            drawContent(mRenderCanvas);
+            mRenderCanvas.restoreToCount(count);
+        }
+        mRenderCacheDirtyRect.setEmpty();
+
+        canvas.drawBitmap(mRenderCache, 0, 0, null);
+        return true;
+    }
+
     private void drawPinyinAndText(Canvas canvas) {
+        PinyinLayout layout = mPinyinText != null ? mPinyinText.getLayout() : null;
+        if (layout == null) {
+            return;
+        }
+        char[] text = mPinyinText.getText();
+        char[] pinyin = mPinyinText.getPinyin();
+
         int paddingLeft = this.getPaddingLeft();
         int paddingTop = this.getPaddingTop();
 
-        for (int i = 0; i < mPinyinCompats.size(); i++) {
-            PinyinCompat compat = mPinyinCompats.get(i);
+        // only draw lines & items inside the clip, a long text in a ScrollView shows only a few lines
+        if (!canvas.getClipBounds(mClipBounds)) {
+            return;
+        }
+        int descent = layout.getTextHeight() / 4; // text descent may reach into the next line
+        int firstLine = layout.getLineForVertical(mClipBounds.top - paddingTop - descent);
+        int lastLine = layout.getLineForVertical(mClipBounds.bottom - paddingTop);
+        int clipLeft = mClipBounds.left - paddingLeft;
+        int clipRight = mClipBounds.right - paddingLeft;
+
+        PinyinGlyphAtlas atlas = null;
+        if (mPinyinAtlasEnabled) {
+            atlas = PinyinGlyphAtlas.obtain(mPinyinPaint);
+        }
 
-            // draw text
-            mPaint.setColor(mTextColor);
-            mPaint.setTextSize(mTextSize);
-            compat.textRect.offset(paddingLeft, paddingTop);
-            canvas.drawText(compat.text, compat.textRect.left, compat.textRect.bottom, mPaint);
+        // draw all text, then all pinyin, so each paint is set up only once
+        int drawnCount = 0;
+        for (int line = firstLine; line <= lastLine; line++) {
+            drawnCount += drawLine(canvas, layout, line, clipLeft, clipRight, text, true, null);
+        }
+        for (int line = firstLine; line <= lastLine; line++) {
+            drawLine(canvas, layout, line, clipLeft, clipRight, pinyin, false, atlas);
+        }
 
-            if (debugDraw) {
-                mDebugPaint.setColor(mTextColor);
-                canvas.drawRect(compat.textRect, mDebugPaint);
+        if (mMetrics != null) {
+            int culledCount = layout.getItemCount() - drawnCount;
+            mMetrics.lastDrawnItemCount = drawnCount;
+            mMetrics.lastCulledItemCount = culledCount;
+            mMetrics.drawnItemCount += drawnCount;
+            mMetrics.culledItemCount += culledCount;
+        }
+    }
+
+    // draw the text or pinyin of visible items in the line, from the atlas if not null. Returns the number of
+    // visible items
+    private int drawLine(Canvas canvas, PinyinLayout layout, int line, int clipLeft, int clipRight, char[] chars,
+                          boolean isText, PinyinGlyphAtlas atlas) {
+        int paddingLeft = this.getPaddingLeft();
+        int paddingTop = this.getPaddingTop();
+
+        TextPaint paint = isText ? mTextPaint : mPinyinPaint;
+        int baseline = paddingTop + (isText ? layout.getTextBaseline(line) : layout.getPinyinBaseline(line));
+        int height = isText ? layout.getTextHeight() : layout.getPinyinHeight();
+
+        // visible items
+        int start = layout.getItemForHorizontal(line, clipLeft);
+        int end = start;
+        int lineEnd = layout.getLineEnd(line);
+        while (end < lineEnd && layout.getItemLeft(end) <= clipRight) {
+            end++;
+        }
+
+        // one drawText per item, it shapes and kerns the item and is supported by all canvases
+        for (int i = start; i < end; i++) {
+            int charStart = isText ? mPinyinText.getTextStart(i) : mPinyinText.getPinyinStart(i);
+            int charCount = isText ? mPinyinText.getTextLength(i) : mPinyinText.getPinyinLength(i);
+
+            boolean highlighted = i >= mHighlightStart && i < mHighlightEnd;
+            if (highlighted) {
+                paint.setColor(isText ? mHighlightTextColor : mHighlightPinyinTextColor);
+            }
+
+            if (charCount > 0) {
+                int x = paddingLeft + layout.getItemLeft(i);
+                if (atlas == null || !atlas.draw(canvas, chars, charStart, charCount, x, baseline, paint)) {
+                    canvas.drawText(chars, charStart, charCount, x, baseline, paint);
+                }
             }
 
-            // draw pinyin
-            mPaint.setColor(mPinyinTextColor);
-            mPaint.setTextSize(mPinyinTextSize);
-            compat.pinyinRect.offset(paddingLeft, paddingTop);
-            canvas.drawText(compat.pinyin, compat.pinyinRect.left, compat.pinyinRect.bottom, mPaint);
+            if (highlighted) {
+                paint.setColor(isText ? mTextColor : mPinyinTextColor);
+            }
 
             if (debugDraw) {
-                mDebugPaint.setColor(mPinyinTextColor);
-                canvas.drawRect(compat.pinyinRect, mDebugPaint);
+                int left = paddingLeft + layout.getItemLeft(i);
+                int width = isText ? mPinyinText.getTextWidth(i) : mPinyinText.getPinyinWidth(i);
+                mDebugPaint.setColor(paint.getColor());
+                canvas.drawRect(left, baseline - height, left + width, baseline, mDebugPaint);
             }
         }
+        return end - start;
     }
 
     private void drawPlainText(Canvas canvas) {
-        if (mStaticLayout != null) {
+        if (mPlainLayout != null) {
             int paddingLeft = this.getPaddingLeft();
             int paddingTop = this.getPaddingTop();
             canvas.translate(paddingLeft, paddingTop);
 
+            mPaint.setTextSize(mTextSize); // also used to measure pinyin
             mPaint.setColor(mTextColor);
 
-            mStaticLayout.draw(canvas);
+            mPlainLayout.draw(canvas);
         }
     }
 
-    private int getTextWidth(String text, int textSize) {
-        mPaint.setTextSize(textSize);
-
-        return (int) Math.ceil(Layout.getDesiredWidth(text, mPaint));
-    }
+    // converts & measures hanzi text off the main thread, skipped or dropped once the view content changed
+    private static class HanziTextTask implements Runnable {
+        private final WeakReference<PinyinTextView> mView;
+        private final AtomicInteger mContentGeneration;
+        private final int mGeneration;
+        private final String mText;
+        private final PinyinDictionary mDictionary;
+        private final PhraseDictionary mPhrases;
+        private final PrecomputedPinyinText.Params mParams;
+        private final int mWidth;
+        private final Executor mLayoutExecutor;
+        private final PinyinLayoutCache mLayoutCache;
+
+        HanziTextTask(PinyinTextView view, int generation, String text, PinyinDictionary dictionary,
+                      PhraseDictionary phrases, PrecomputedPinyinText.Params params, int width,
+                      Executor layoutExecutor, PinyinLayoutCache layoutCache) {
+            mView = new WeakReference<PinyinTextView>(view);
+            mContentGeneration = view.mContentGeneration;
+            mGeneration = generation;
+            mText = text;
+            mDictionary = dictionary;
+            mPhrases = phrases;
+            mParams = params;
+            mWidth = width;
+            mLayoutExecutor = layoutExecutor;
+            mLayoutCache = layoutCache;
+        }
 
-    static class PinyinCompat {
-        String text;
-        String pinyin;
+        private boolean isCancelled() {
+            return mContentGeneration.get() != mGeneration || mView.get() == null;
+        }
 
-        Rect textRect;
-        Rect pinyinRect;
+        @Override
+        public void run() {
+            if (isCancelled()) {
+                return;
+            }
+            List<Pair<String, String>> pinyinList = mDictionary.convert(mText, mPhrases);
+            if (isCancelled()) {
+                return;
+            }
+            final PrecomputedPinyinText pinyinText;
+            if (mLayoutCache != null && mWidth != PrecomputedPinyinText.NO_WIDTH) {
+                pinyinText = mLayoutCache.getOrCreate(PrecomputedPinyinText.pack(pinyinList), mParams, mWidth,
+                        mLayoutExecutor);
+            } else if (mLayoutExecutor != null) {
+                pinyinText = PrecomputedPinyinText.create(pinyinList, mParams, mWidth, mLayoutExecutor);
+            } else {
+                pinyinText = PrecomputedPinyinText.create(pinyinList, mParams, mWidth);
+            }
+            if (isCancelled()) {
+                return;
+            }
+            MAIN_HANDLER.post(new Runnable() {
+                @Override
+                public void run() {
+                    PinyinTextView view = mView.get();
+                    if (view != null && mContentGeneration.get() == mGeneration) {
+                        view.onHanziTextReady(pinyinText);
+                    }
+                }
+            });
+        }
     }
-
 }
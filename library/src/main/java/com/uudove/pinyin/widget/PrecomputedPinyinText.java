@@ -0,0 +1,719 @@
+package com.uudove.pinyin.widget;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.Pair;
+
+/**
+ * Pinyin and text with all measurements (and optionally line breaks) already done.<br/>
+ * Measuring a long passage may take tens of milliseconds, {@link #create(List, Params, int)} can be called on any
+ * thread, and the result displayed by {@link PinyinTextView#setPrecomputedPinyinText(PrecomputedPinyinText)}.
+ * <pre>
+ * final PrecomputedPinyinText.Params params = pinyinTextView.getPinyinTextParams();
+ * final int width = pinyinTextView.getWidth() - pinyinTextView.getPaddingLeft() - pinyinTextView.getPaddingRight();
+ * executor.execute(new Runnable() {
+ *     public void run() {
+ *         final PrecomputedPinyinText text = PrecomputedPinyinText.create(pairList, params, width);
+ *         pinyinTextView.post(new Runnable() {
+ *             public void run() {
+ *                 pinyinTextView.setPrecomputedPinyinText(text);
+ *             }
+ *         });
+ *     }
+ * });
+ * </pre>
+ * Instances are immutable. Items are stored in packed char and int arrays, no object is allocated per item.<br/>
+ * An item whose text ends with '\n' is a hard break, the next item starts a new line. For long texts with several
+ * paragraphs, {@link #create(List, Params, int, Executor)} measures and breaks lines on several threads.
+ *
+ * @author wangjingtao
+ */
+public final class PrecomputedPinyinText {
+
+    /**
+     * Pass to {@link #create(List, Params, int)} to measure only, without breaking lines.
+     */
+    public static final int NO_WIDTH = -1;
+
+    private static final int[] NO_HARD_BREAKS = new int[0];
+
+    private final Params mParams;
+
+    private final int mItemCount;
+
+    // concatenated text & pinyin of all items
+    private final char[] mText;
+    private final char[] mPinyin;
+
+    // start of each item in mText & mPinyin, mTextStarts[mItemCount] is the end of the last item
+    private final int[] mTextStarts;
+    private final int[] mPinyinStarts;
+
+    // items whose text ends with '\n', ascending
+    private final int[] mHardBreaks;
+
+    // line heights above the baseline, from the font metrics of the text sizes
+    private final int mTextHeight;
+    private final int mPinyinHeight;
+    // pinyin descenders (g, y, p...) end this far below the pinyin baseline, text starts below them
+    private final int mPinyinDescent;
+
+    // measured text & pinyin width of each item
+    private final int[] mTextWidths;
+    private final int[] mPinyinWidths;
+
+    // may be null
+    private final PinyinLayout mLayout;
+
+    private PrecomputedPinyinText(Params params, int itemCount, char[] text, int[] textStarts, char[] pinyin,
+                                  int[] pinyinStarts, int[] hardBreaks, int textHeight, int pinyinHeight,
+                                  int pinyinDescent, int[] textWidths, int[] pinyinWidths, PinyinLayout layout) {
+        mParams = params;
+        mItemCount = itemCount;
+        mText = text;
+        mTextStarts = textStarts;
+        mPinyin = pinyin;
+        mPinyinStarts = pinyinStarts;
+        mHardBreaks = hardBreaks;
+        mTextHeight = textHeight;
+        mPinyinHeight = pinyinHeight;
+        mPinyinDescent = pinyinDescent;
+        mTextWidths = textWidths;
+        mPinyinWidths = pinyinWidths;
+        mLayout = layout;
+    }
+
+    /**
+     * Measure pinyin and text, and break lines for the given width. Can be called on any thread.
+     *
+     * @param pinyinList Text-Pinyin pair.
+     * @param params     text style, usually from {@link PinyinTextView#getPinyinTextParams()}.
+     * @param width      available width of the content (padding excluded), or {@link #NO_WIDTH}.
+     *
+     * @return the precomputed text.
+     */
+    public static PrecomputedPinyinText create(List<Pair<String, String>> pinyinList, Params params, int width) {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.LINEAR_TEXT_FLAG);
+        PrecomputedPinyinText text = create(pinyinList, params, paint, null);
+        return width == NO_WIDTH ? text : text.withLayout(width, null);
+    }
+
+    /**
+     * Same as {@link #create(List, Params, int)}, measuring items and breaking paragraphs into lines on several
+     * threads. The calling thread takes part and returns when all is done, the result is the same as on one
+     * thread.<br/>
+     * Worth it for texts of thousands of items, shorter texts are done on the calling thread only.
+     *
+     * @param pinyinList Text-Pinyin pair.
+     * @param params     text style, usually from {@link PinyinTextView#getPinyinTextParams()}.
+     * @param width      available width of the content (padding excluded), or {@link #NO_WIDTH}.
+     * @param executor   executor to run parallel work on, null for a pool shared by all views with a thread per
+     *                   core.
+     *
+     * @return the precomputed text.
+     */
+    public static PrecomputedPinyinText create(List<Pair<String, String>> pinyinList, Params params, int width,
+                                               Executor executor) {
+        if (executor == null) {
+            executor = ParallelPinyinLayout.getSharedExecutor();
+        }
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.LINEAR_TEXT_FLAG);
+        PrecomputedPinyinText text = create(pinyinList, params, paint, executor);
+        return width == NO_WIDTH ? text : text.withLayout(width, executor);
+    }
+
+    /**
+     * Measure pinyin and text given as two char sequences and the end of each item in them, and break lines for the
+     * given width. Unlike a list of pairs, no object is created per item. Can be called on any thread.
+     * <pre>
+     * // 你好 nǐ hǎo
+     * PrecomputedPinyinText.create("你好", new int[]{1, 2}, "nǐhǎo", new int[]{2, 5}, params, width);
+     * </pre>
+     *
+     * @param text       text of all items.
+     * @param textEnds   end of the text of each item in text, ascending.
+     * @param pinyin     pinyin of all items.
+     * @param pinyinEnds end of the pinyin of each item in pinyin, ascending. An item without pinyin ends where the
+     *                   last one does.
+     * @param params     text style, usually from {@link PinyinTextView#getPinyinTextParams()}.
+     * @param width      available width of the content (padding excluded), or {@link #NO_WIDTH}.
+     *
+     * @return the precomputed text.
+     *
+     * @throws IllegalArgumentException if the ends don't match the char sequences or each other.
+     */
+    public static PrecomputedPinyinText create(CharSequence text, int[] textEnds, CharSequence pinyin,
+                                               int[] pinyinEnds, Params params, int width) {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.LINEAR_TEXT_FLAG);
+        PrecomputedPinyinText precomputed = create(text, textEnds, pinyin, pinyinEnds, params, paint, null);
+        return width == NO_WIDTH ? precomputed : precomputed.withLayout(width, null);
+    }
+
+    /**
+     * Same as {@link #create(CharSequence, int[], CharSequence, int[], Params, int)}, measuring items and breaking
+     * paragraphs into lines on several threads like {@link #create(List, Params, int, Executor)}.
+     *
+     * @param executor executor to run parallel work on, null for a pool shared by all views with a thread per core.
+     *
+     * @throws IllegalArgumentException if the ends don't match the char sequences or each other.
+     */
+    public static PrecomputedPinyinText create(CharSequence text, int[] textEnds, CharSequence pinyin,
+                                               int[] pinyinEnds, Params params, int width, Executor executor) {
+        if (executor == null) {
+            executor = ParallelPinyinLayout.getSharedExecutor();
+        }
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG | Paint.LINEAR_TEXT_FLAG);
+        PrecomputedPinyinText precomputed = create(text, textEnds, pinyin, pinyinEnds, params, paint, executor);
+        return width == NO_WIDTH ? precomputed : precomputed.withLayout(width, executor);
+    }
+
+    /**
+     * @param executor executor to measure on in parallel with the calling thread, null to measure on the calling
+     *                 thread only.
+     */
+    static PrecomputedPinyinText create(CharSequence text, int[] textEnds, CharSequence pinyin, int[] pinyinEnds,
+                                        Params params, TextPaint paint, Executor executor) {
+        return measure(params, pack(text, textEnds, pinyin, pinyinEnds), paint, executor);
+    }
+
+    /**
+     * Copy items given as char sequences and item ends into packed buffers.
+     *
+     * @throws IllegalArgumentException if the ends don't match the char sequences or each other.
+     */
+    static Content pack(CharSequence text, int[] textEnds, CharSequence pinyin, int[] pinyinEnds) {
+        int count = textEnds.length;
+        if (pinyinEnds.length != count) {
+            throw new IllegalArgumentException("Text has " + count + " items, pinyin has " + pinyinEnds.length);
+        }
+        int[] textStarts = toStarts(textEnds, text.length(), "text");
+        int[] pinyinStarts = toStarts(pinyinEnds, pinyin.length(), "pinyin");
+
+        // copied once into the item buffers, chars after the last item are left out
+        char[] textChars = new char[textStarts[count]];
+        TextUtils.getChars(text, 0, textChars.length, textChars, 0);
+        char[] pinyinChars = new char[pinyinStarts[count]];
+        TextUtils.getChars(pinyin, 0, pinyinChars.length, pinyinChars, 0);
+
+        return new Content(count, textChars, textStarts, pinyinChars, pinyinStarts);
+    }
+
+    // item starts from item ends, starts[count] is the end of the last item
+    private static int[] toStarts(int[] ends, int length, String name) {
+        int[] starts = new int[ends.length + 1];
+        for (int i = 0; i < ends.length; i++) {
+            if (ends[i] < starts[i] || ends[i] > length) {
+                throw new IllegalArgumentException("End of " + name + " item " + i + " is " + ends[i]
+                        + ", must be from " + starts[i] + " to " + length);
+            }
+            starts[i + 1] = ends[i];
+        }
+        return starts;
+    }
+
+    /**
+     * @param executor executor to measure on in parallel with the calling thread, null to measure on the calling
+     *                 thread only.
+     */
+    static PrecomputedPinyinText create(List<Pair<String, String>> pinyinList, Params params, TextPaint paint,
+                                        Executor executor) {
+        return measure(params, pack(pinyinList), paint, executor);
+    }
+
+    /**
+     * Copy Text-Pinyin pairs into packed buffers.
+     */
+    static Content pack(List<Pair<String, String>> pinyinList) {
+        int count = pinyinList.size();
+        int[] textStarts = new int[count + 1];
+        int[] pinyinStarts = new int[count + 1];
+
+        // first pass, find where every item starts
+        int item = 0;
+        for (Pair<String, String> pair : pinyinList) {
+            textStarts[item + 1] = textStarts[item] + (pair.first == null ? 0 : pair.first.length());
+            pinyinStarts[item + 1] = pinyinStarts[item] + (pair.second == null ? 0 : pair.second.length());
+            item++;
+        }
+
+        // second pass, copy all items into one buffer
+        char[] text = new char[textStarts[count]];
+        char[] pinyin = new char[pinyinStarts[count]];
+        item = 0;
+        for (Pair<String, String> pair : pinyinList) {
+            if (pair.first != null) {
+                pair.first.getChars(0, pair.first.length(), text, textStarts[item]);
+            }
+            if (pair.second != null) {
+                pair.second.getChars(0, pair.second.length(), pinyin, pinyinStarts[item]);
+            }
+            item++;
+        }
+
+        return new Content(count, text, textStarts, pinyin, pinyinStarts);
+    }
+
+    /**
+     * Measure packed items.
+     *
+     * @param executor executor to measure on in parallel with the calling thread, null to measure on the calling
+     *                 thread only.
+     */
+    static PrecomputedPinyinText measure(Params params, Content content, TextPaint paint, Executor executor) {
+        return measure(params, content.mCount, content.mText, content.mTextStarts, content.mPinyin,
+                content.mPinyinStarts, findHardBreaks(content.mText, content.mTextStarts, content.mCount), paint,
+                executor);
+    }
+
+    /**
+     * Create from packed items and measurements saved before, without measuring anything.
+     */
+    static PrecomputedPinyinText restore(Params params, Content content, int textHeight, int pinyinHeight,
+                                         int pinyinDescent, int[] textWidths, int[] pinyinWidths,
+                                         PinyinLayout layout) {
+        return new PrecomputedPinyinText(params, content.mCount, content.mText, content.mTextStarts, content.mPinyin,
+                content.mPinyinStarts, findHardBreaks(content.mText, content.mTextStarts, content.mCount), textHeight,
+                pinyinHeight, pinyinDescent, textWidths, pinyinWidths, layout);
+    }
+
+    // items whose text ends with '\n'
+    private static int[] findHardBreaks(char[] text, int[] textStarts, int count) {
+        int breakCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (isHardBreak(text, textStarts, i)) {
+                breakCount++;
+            }
+        }
+        if (breakCount == 0) {
+            return NO_HARD_BREAKS;
+        }
+        int[] hardBreaks = new int[breakCount];
+        breakCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (isHardBreak(text, textStarts, i)) {
+                hardBreaks[breakCount++] = i;
+            }
+        }
+        return hardBreaks;
+    }
+
+    private static boolean isHardBreak(char[] text, int[] textStarts, int item) {
+        return textStarts[item + 1] > textStarts[item] && text[textStarts[item + 1] - 1] == '\n';
+    }
+
+    private static PrecomputedPinyinText measure(Params params, int count, char[] text, int[] textStarts,
+                                                 char[] pinyin, int[] pinyinStarts, int[] hardBreaks,
+                                                 TextPaint paint, Executor executor) {
+        // line heights depend only on the text style, not on the glyphs of the text
+        int textHeight = FontMetricsCache.getAscent(params.mTypeface, params.mTextSize, paint);
+        int pinyinHeight = FontMetricsCache.getAscent(params.mTypeface, params.mPinyinTextSize, paint);
+        int pinyinDescent = FontMetricsCache.getDescent(params.mTypeface, params.mPinyinTextSize, paint);
+
+        // measure text & pinyin width of every item
+        int[] textWidths = new int[count];
+        int[] pinyinWidths = new int[count];
+        if (executor != null) {
+            ParallelPinyinLayout.measureWidths(params, count, text, textStarts, pinyin, pinyinStarts, textWidths,
+                    pinyinWidths, executor);
+        } else {
+            measureWidths(params, 0, count, text, textStarts, pinyin, pinyinStarts, textWidths, pinyinWidths, paint);
+        }
+
+        return new PrecomputedPinyinText(params, count, text, textStarts, pinyin, pinyinStarts, hardBreaks,
+                textHeight, pinyinHeight, pinyinDescent, textWidths, pinyinWidths, null);
+    }
+
+    /**
+     * Measure text & pinyin width of items [start, end).
+     */
+    static void measureWidths(Params params, int start, int end, char[] text, int[] textStarts, char[] pinyin,
+                              int[] pinyinStarts, int[] textWidths, int[] pinyinWidths, TextPaint paint) {
+        TextWidthCache cache = TextWidthCache.getInstance();
+        paint.setTypeface(params.mTypeface);
+
+        paint.setTextSize(params.mTextSize);
+        for (int i = start; i < end; i++) {
+            textWidths[i] = cache.getTextWidth(text, textStarts[i], textStarts[i + 1] - textStarts[i], paint);
+        }
+        paint.setTextSize(params.mPinyinTextSize);
+        for (int i = start; i < end; i++) {
+            pinyinWidths[i] =
+                    cache.getTextWidth(pinyin, pinyinStarts[i], pinyinStarts[i + 1] - pinyinStarts[i], paint);
+        }
+    }
+
+    /**
+     * Get the same content measured with other params. Widths are measured again only if text sizes or typeface
+     * changed.
+     *
+     * @param executor executor to measure on in parallel with the calling thread, may be null.
+     */
+    PrecomputedPinyinText withParams(Params params, TextPaint paint, Executor executor) {
+        if (mParams.equals(params)) {
+            return this;
+        }
+        if (mParams.hasSameTextStyle(params)) { // only spacing changed
+            return new PrecomputedPinyinText(params, mItemCount, mText, mTextStarts, mPinyin, mPinyinStarts,
+                    mHardBreaks, mTextHeight, mPinyinHeight, mPinyinDescent, mTextWidths, mPinyinWidths, null);
+        }
+        return measure(params, mItemCount, mText, mTextStarts, mPinyin, mPinyinStarts, mHardBreaks, paint,
+                executor);
+    }
+
+    /**
+     * Get the same content with lines broken for the available width. Returns this if already done.
+     *
+     * @param executor executor to break paragraphs into lines on in parallel with the calling thread, may be null.
+     */
+    PrecomputedPinyinText withLayout(int availableWidth, Executor executor) {
+        if (mLayout != null && mLayout.getAvailableWidth() == availableWidth) {
+            return this;
+        }
+
+        PinyinLayout layout;
+        if (executor != null) {
+            layout = ParallelPinyinLayout.create(mItemCount, mTextWidths, mPinyinWidths, mHardBreaks,
+                    getTextHeight(), getPinyinHeight(), getPinyinTextSpacing(), mParams.mHorizontalSpacing,
+                    mParams.mVerticalSpacing, availableWidth, executor);
+        } else {
+            layout = PinyinLayout.create(mItemCount, mTextWidths, mPinyinWidths, mHardBreaks, getTextHeight(),
+                    getPinyinHeight(), getPinyinTextSpacing(), mParams.mHorizontalSpacing, mParams.mVerticalSpacing,
+                    availableWidth);
+        }
+        return new PrecomputedPinyinText(mParams, mItemCount, mText, mTextStarts, mPinyin, mPinyinStarts,
+                mHardBreaks, mTextHeight, mPinyinHeight, mPinyinDescent, mTextWidths, mPinyinWidths, layout);
+    }
+
+    /**
+     * Get the same content without widths and lines, to keep only the content while memory is low. See
+     * {@link #measured(TextPaint, Executor)}.
+     */
+    PrecomputedPinyinText withoutMeasurements() {
+        if (mTextWidths == null) {
+            return this;
+        }
+        return new PrecomputedPinyinText(mParams, mItemCount, mText, mTextStarts, mPinyin, mPinyinStarts,
+                mHardBreaks, 0, 0, 0, null, null, null);
+    }
+
+    /**
+     * Whether widths are measured, false after {@link #withoutMeasurements()}. Lines can be broken and content
+     * replaced only if measured.
+     */
+    boolean isMeasured() {
+        return mTextWidths != null;
+    }
+
+    /**
+     * Get the same content measured again after {@link #withoutMeasurements()}. Returns this if measured.
+     *
+     * @param executor executor to measure on in parallel with the calling thread, may be null.
+     */
+    PrecomputedPinyinText measured(TextPaint paint, Executor executor) {
+        if (mTextWidths != null) {
+            return this;
+        }
+        return measure(mParams, mItemCount, mText, mTextStarts, mPinyin, mPinyinStarts, mHardBreaks, paint,
+                executor);
+    }
+
+    /**
+     * Get the height of the content laid out at other text sizes, with widths scaled from the measured ones instead
+     * of measuring again. Scaled widths may be off by a pixel.
+     *
+     * @return height, or -1 if an item would be wider than availableWidth.
+     */
+    int getScaledHeight(int textSize, int pinyinTextSize, int availableWidth, TextPaint paint) {
+        float textScale = (float) textSize / mParams.mTextSize;
+        float pinyinScale = (float) pinyinTextSize / mParams.mPinyinTextSize;
+        int lineCount = PinyinLayout.countLines(mItemCount, mTextWidths, textScale, mPinyinWidths, pinyinScale,
+                mHardBreaks, mParams.mVerticalSpacing, availableWidth);
+        if (lineCount < 0) {
+            return -1;
+        }
+        int textHeight = FontMetricsCache.getAscent(mParams.mTypeface, textSize, paint);
+        int pinyinHeight = FontMetricsCache.getAscent(mParams.mTypeface, pinyinTextSize, paint);
+        int pinyinDescent = FontMetricsCache.getDescent(mParams.mTypeface, pinyinTextSize, paint);
+        return PinyinLayout.getHeight(lineCount, textHeight, pinyinHeight,
+                mParams.getPinyinTextSpacing() + pinyinDescent, mParams.mHorizontalSpacing);
+    }
+
+    /**
+     * Get the content with items [start, end) replaced by pinyinList. Only the new items are measured, and if lines
+     * were broken, only lines around the change are broken again.
+     *
+     * @param dirty set to the area of the layout that changed, as {left, top, right, bottom}.
+     */
+    PrecomputedPinyinText replace(int start, int end, List<Pair<String, String>> pinyinList, TextPaint paint,
+                                  int[] dirty) {
+        PrecomputedPinyinText inserted = create(pinyinList, mParams, paint, null);
+        int insertedCount = inserted.mItemCount;
+        int count = mItemCount - (end - start) + insertedCount;
+
+        char[] text = splice(mText, mTextStarts[start], mTextStarts[end], inserted.mText);
+        char[] pinyin = splice(mPinyin, mPinyinStarts[start], mPinyinStarts[end], inserted.mPinyin);
+        int[] textStarts = spliceStarts(mTextStarts, mItemCount, start, end, inserted.mTextStarts, insertedCount);
+        int[] pinyinStarts =
+                spliceStarts(mPinyinStarts, mItemCount, start, end, inserted.mPinyinStarts, insertedCount);
+        int[] textWidths = splice(mTextWidths, mItemCount, start, end, inserted.mTextWidths, insertedCount);
+        int[] pinyinWidths = splice(mPinyinWidths, mItemCount, start, end, inserted.mPinyinWidths, insertedCount);
+        int[] hardBreaks = spliceHardBreaks(mHardBreaks, start, end, inserted.mHardBreaks, insertedCount);
+
+        // line heights don't change with content, only lines around the change move
+        PinyinLayout layout = null;
+        if (mLayout != null) {
+            layout = PinyinLayout.update(mLayout, start, end, start + insertedCount, count, textWidths, pinyinWidths,
+                    hardBreaks, dirty);
+        }
+
+        return new PrecomputedPinyinText(mParams, count, text, textStarts, pinyin, pinyinStarts, hardBreaks,
+                mTextHeight, mPinyinHeight, mPinyinDescent, textWidths, pinyinWidths, layout);
+    }
+
+    // replace hard breaks of items [start, end) by inserted ones, and move hard breaks after them
+    private static int[] spliceHardBreaks(int[] hardBreaks, int start, int end, int[] inserted, int insertedCount) {
+        int before = PinyinLayout.findHardBreak(hardBreaks, start);
+        int after = PinyinLayout.findHardBreak(hardBreaks, end);
+        int length = before + inserted.length + hardBreaks.length - after;
+        if (length == 0) {
+            return NO_HARD_BREAKS;
+        }
+        int[] result = new int[length];
+        System.arraycopy(hardBreaks, 0, result, 0, before);
+        for (int i = 0; i < inserted.length; i++) {
+            result[before + i] = start + inserted[i];
+        }
+        int shift = insertedCount - (end - start);
+        for (int i = after; i < hardBreaks.length; i++) {
+            result[before + inserted.length + i - after] = hardBreaks[i] + shift;
+        }
+        return result;
+    }
+
+    // replace array[start, end) by inserted
+    private static char[] splice(char[] array, int start, int end, char[] inserted) {
+        char[] result = new char[array.length - (end - start) + inserted.length];
+        System.arraycopy(array, 0, result, 0, start);
+        System.arraycopy(inserted, 0, result, start, inserted.length);
+        System.arraycopy(array, end, result, start + inserted.length, array.length - end);
+        return result;
+    }
+
+    // replace array[start, end) by inserted[0, insertedLength)
+    private static int[] splice(int[] array, int length, int start, int end, int[] inserted, int insertedLength) {
+        int[] result = new int[length - (end - start) + insertedLength];
+        System.arraycopy(array, 0, result, 0, start);
+        System.arraycopy(inserted, 0, result, start, insertedLength);
+        System.arraycopy(array, end, result, start + insertedLength, length - end);
+        return result;
+    }
+
+    // replace item starts [start, end) by inserted item starts, and move starts after them
+    private static int[] spliceStarts(int[] starts, int count, int start, int end, int[] insertedStarts,
+                                      int insertedCount) {
+        int[] result = new int[count - (end - start) + insertedCount + 1];
+        System.arraycopy(starts, 0, result, 0, start);
+        int base = starts[start];
+        for (int i = 0; i < insertedCount; i++) {
+            result[start + i] = base + insertedStarts[i];
+        }
+        int shift = base + insertedStarts[insertedCount] - starts[end];
+        for (int i = end; i <= count; i++) {
+            result[i - end + start + insertedCount] = starts[i] + shift;
+        }
+        return result;
+    }
+
+    /**
+     * @return the params this text was measured with.
+     */
+    public Params getParams() {
+        return mParams;
+    }
+
+    /**
+     * @return number of Text-Pinyin items.
+     */
+    public int getItemCount() {
+        return mItemCount;
+    }
+
+    /**
+     * @return whether the text of the item ends with '\n', so a line ends after it whatever the width.
+     */
+    boolean isHardBreak(int item) {
+        int index = PinyinLayout.findHardBreak(mHardBreaks, item);
+        return index < mHardBreaks.length && mHardBreaks[index] == item;
+    }
+
+    /**
+     * @return the width lines were broken for, or {@link #NO_WIDTH}.
+     */
+    public int getWidth() {
+        return mLayout != null ? mLayout.getAvailableWidth() : NO_WIDTH;
+    }
+
+    char[] getText() {
+        return mText;
+    }
+
+    int getTextStart(int item) {
+        return mTextStarts[item];
+    }
+
+    int getTextLength(int item) {
+        return mTextStarts[item + 1] - mTextStarts[item];
+    }
+
+    char[] getPinyin() {
+        return mPinyin;
+    }
+
+    int getPinyinStart(int item) {
+        return mPinyinStarts[item];
+    }
+
+    int getPinyinLength(int item) {
+        return mPinyinStarts[item + 1] - mPinyinStarts[item];
+    }
+
+    int getTextWidth(int item) {
+        return mTextWidths[item];
+    }
+
+    int getPinyinWidth(int item) {
+        return mPinyinWidths[item];
+    }
+
+    PinyinLayout getLayout() {
+        return mLayout;
+    }
+
+    int getTextHeight() {
+        return mTextHeight;
+    }
+
+    int getPinyinHeight() {
+        return mPinyinHeight;
+    }
+
+    int getPinyinDescent() {
+        return mPinyinDescent;
+    }
+
+    // from the pinyin baseline to the top of text: pinyin descent, then half of line spacing
+    int getPinyinTextSpacing() {
+        return mPinyinDescent + mParams.getPinyinTextSpacing();
+    }
+
+    /**
+     * Text and pinyin of items packed into char buffers, not measured yet.
+     */
+    static final class Content {
+        final int mCount;
+        final char[] mText;
+        final int[] mTextStarts;
+        final char[] mPinyin;
+        final int[] mPinyinStarts;
+
+        Content(int count, char[] text, int[] textStarts, char[] pinyin, int[] pinyinStarts) {
+            mCount = count;
+            mText = text;
+            mTextStarts = textStarts;
+            mPinyin = pinyin;
+            mPinyinStarts = pinyinStarts;
+        }
+    }
+
+    /**
+     * Text style used to measure pinyin and text. Two params are equal if they produce the same measurements.
+     */
+    public static final class Params {
+        private final int mTextSize;
+        private final int mPinyinTextSize;
+        private final int mHorizontalSpacing;
+        private final int mVerticalSpacing;
+        private final Typeface mTypeface;
+
+        /**
+         * @param textSize          text size in pixels.
+         * @param pinyinTextSize    pinyin text size in pixels.
+         * @param horizontalSpacing line spacing in pixels, see {@link PinyinTextView#setHorizontalSpacing(int)}.
+         * @param verticalSpacing   spacing between two items in pixels, see
+         *                          {@link PinyinTextView#setVerticalSpacing(int)}.
+         * @param typeface          typeface, may be null.
+         */
+        public Params(int textSize, int pinyinTextSize, int horizontalSpacing, int verticalSpacing,
+                      Typeface typeface) {
+            mTextSize = textSize;
+            mPinyinTextSize = pinyinTextSize;
+            mHorizontalSpacing = horizontalSpacing;
+            mVerticalSpacing = verticalSpacing;
+            mTypeface = typeface;
+        }
+
+        public int getTextSize() {
+            return mTextSize;
+        }
+
+        public int getPinyinTextSize() {
+            return mPinyinTextSize;
+        }
+
+        public int getHorizontalSpacing() {
+            return mHorizontalSpacing;
+        }
+
+        public int getVerticalSpacing() {
+            return mVerticalSpacing;
+        }
+
+        public Typeface getTypeface() {
+            return mTypeface;
+        }
+
+        // line spacing (between pinyin and text), half of line spacing
+        int getPinyinTextSpacing() {
+            return mHorizontalSpacing / 2;
+        }
+
+        boolean hasSameTextStyle(Params other) {
+            return mTextSize == other.mTextSize && mPinyinTextSize == other.mPinyinTextSize
+                    && mTypeface == other.mTypeface;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Params)) {
+                return false;
+            }
+            Params other = (Params) o;
+            return hasSameTextStyle(other) && mHorizontalSpacing == other.mHorizontalSpacing
+                    && mVerticalSpacing == other.mVerticalSpacing;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mTextSize;
+            result = 31 * result + mPinyinTextSize;
+            result = 31 * result + mHorizontalSpacing;
+            result = 31 * result + mVerticalSpacing;
+            result = 31 * result + (mTypeface != null ? mTypeface.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Params[textSize=" + mTextSize + ",pinyinTextSize=" + mPinyinTextSize + ",horizontalSpacing="
+                    + mHorizontalSpacing + ",verticalSpacing=" + mVerticalSpacing + ",typeface=" + mTypeface + "]";
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.uudove.pinyin.widget;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.TextPaint;
+
+/**
+ * Process wide cache of measured text widths, shared by all {@link PinyinTextView}s.<br/>
+ * Entries are keyed by text, text size and typeface, and the least recently used entry is evicted when the cache is
+ * full. All methods are thread safe.
+ *
+ * @author wangjingtao
+ */
+public final class TextWidthCache {
+
+    /**
+     * Default max entry count. Reading screens usually show a few hundred distinct characters and syllables.
+     */
+    public static final int DEFAULT_MAX_SIZE = 2048;
+
+    private static final TextWidthCache INSTANCE = new TextWidthCache(DEFAULT_MAX_SIZE);
+
+    private final LinkedHashMap<Key, Integer> mMap;
+
+    // reused to look up entries without allocation, guarded by this
+    private final Key mLookupKey = new Key();
+
+    private int mMaxSize;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    private TextWidthCache(int maxSize) {
+        mMaxSize = maxSize;
+        mMap = new LinkedHashMap<Key, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Integer> eldest) {
+                if (size() > mMaxSize) {
+                    mEvictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the shared cache instance.
+     *
+     * @return the shared cache.
+     */
+    public static TextWidthCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the width of text measured by the given paint. The text size and typeface of the paint are part of the
+     * cache key. Doesn't allocate if the width is cached.
+     *
+     * @param text  text to measure.
+     * @param paint paint to measure with.
+     *
+     * @return text width in pixels (rounded up).
+     */
+    public int getTextWidth(String text, TextPaint paint) {
+        float textSize = paint.getTextSize();
+        Typeface typeface = paint.getTypeface();
+        int width = getCachedWidth(null, text, 0, text.length(), textSize, typeface);
+        return width >= 0 ? width : measure(text, textSize, typeface, paint);
+    }
+
+    /**
+     * Get the width of part of a char array measured by the given paint. Doesn't allocate if the width is cached.
+     *
+     * @param text  text to measure.
+     * @param start start of the text.
+     * @param count number of chars to measure.
+     * @param paint paint to measure with.
+     *
+     * @return text width in pixels (rounded up).
+     */
+    public int getTextWidth(char[] text, int start, int count, TextPaint paint) {
+        float textSize = paint.getTextSize();
+        Typeface typeface = paint.getTypeface();
+        int width = getCachedWidth(text, null, start, count, textSize, typeface);
+        return width >= 0 ? width : measure(new String(text, start, count), textSize, typeface, paint);
+    }
+
+    // cached width of chars or string, -1 if not cached
+    private synchronized int getCachedWidth(char[] chars, String string, int start, int count, float textSize,
+                                            Typeface typeface) {
+        mLookupKey.set(chars, string, start, count, textSize, typeface);
+        Integer width = mMap.get(mLookupKey);
+        mLookupKey.set(null, null, 0, 0, 0, null);
+        if (width != null) {
+            mHitCount++;
+            return width;
+        }
+        mMissCount++;
+        return -1;
+    }
+
+    // measure outside the lock, measuring the same text twice is harmless
+    private int measure(String string, float textSize, Typeface typeface, TextPaint paint) {
+        int width = (int) Math.ceil(Layout.getDesiredWidth(string, paint));
+
+        Key key = new Key();
+        key.set(null, string, 0, string.length(), textSize, typeface);
+        synchronized (this) {
+            mMap.put(key, width);
+        }
+        return width;
+    }
+
+    /**
+     * Set the max entry count. Evicts the least recently used entries if needed.
+     *
+     * @param maxSize max entry count, must be positive.
+     */
+    public synchronized void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must larger than 0");
+        }
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Clear all cached widths. Hit and miss counts are kept.
+     */
+    public synchronized void evictAll() {
+        trimToSize(0);
+    }
+
+    private void trimToSize(int size) {
+        while (mMap.size() > size) {
+            Key eldest = mMap.keySet().iterator().next();
+            mMap.remove(eldest);
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * @return number of cached widths.
+     */
+    public synchronized int size() {
+        return mMap.size();
+    }
+
+    /**
+     * @return max number of cached widths.
+     */
+    public synchronized int maxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * @return number of lookups that returned a cached width.
+     */
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return number of lookups that had to measure the text.
+     */
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return number of evicted widths.
+     */
+    public synchronized int evictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = mHitCount + mMissCount;
+        int hitPercent = accesses != 0 ? (100 * mHitCount / accesses) : 0;
+        return "TextWidthCache[size=" + mMap.size() + ",maxSize=" + mMaxSize + ",hits=" + mHitCount + ",misses="
+                + mMissCount + ",hitRate=" + hitPercent + "%]";
+    }
+
+    // text is either part of chars or part of string, so neither is copied to look up
+    private static final class Key {
+        char[] chars;
+        String string;
+        int start;
+        int count;
+        float textSize;
+        Typeface typeface;
+
+        void set(char[] chars, String string, int start, int count, float textSize, Typeface typeface) {
+            this.chars = chars;
+            this.string = string;
+            this.start = start;
+            this.count = count;
+            this.textSize = textSize;
+            this.typeface = typeface;
+        }
+
+        char charAt(int index) {
+            return chars != null ? chars[start + index] : string.charAt(start + index);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            if (count != other.count || textSize != other.textSize || typeface != other.typeface) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                if (charAt(i) != other.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 0;
+            for (int i = 0; i < count; i++) {
+                result = 31 * result + charAt(i);
+            }
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+            return result;
+        }
+    }
+}
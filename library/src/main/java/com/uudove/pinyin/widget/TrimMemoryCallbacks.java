@@ -0,0 +1,66 @@
+package com.uudove.pinyin.widget;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+/**
+ * Passes memory trim levels to all views, registered once with the application context. Shared glyph atlases are
+ * dropped once the UI is hidden.<br/>
+ * Views are held weakly, so views no longer used are not kept alive. Needs API 14, callers check the version.
+ *
+ * @author wangjingtao
+ */
+final class TrimMemoryCallbacks implements ComponentCallbacks2 {
+
+    private static TrimMemoryCallbacks sInstance;
+
+    private final Map<PinyinTextView, Boolean> mViews = new WeakHashMap<PinyinTextView, Boolean>();
+
+    private TrimMemoryCallbacks() {
+    }
+
+    /**
+     * Pass memory trim levels to the view until it is no longer used.
+     */
+    static synchronized void register(Context context, PinyinTextView view) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            if (appContext == null) {
+                return;
+            }
+            sInstance = new TrimMemoryCallbacks();
+            appContext.registerComponentCallbacks(sInstance);
+        }
+        sInstance.mViews.put(view, Boolean.TRUE);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // views may trim on other views being registered, copy first
+        List<PinyinTextView> views;
+        synchronized (TrimMemoryCallbacks.class) {
+            views = new ArrayList<PinyinTextView>(mViews.keySet());
+        }
+        for (PinyinTextView view : views) {
+            view.onTrimMemory(level);
+        }
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            PinyinGlyphAtlas.clear();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+}
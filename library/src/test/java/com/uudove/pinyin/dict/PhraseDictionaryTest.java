@@ -0,0 +1,152 @@
+package com.uudove.pinyin.dict;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the double-array trie of {@link PhraseDictionary}.
+ */
+public class PhraseDictionaryTest {
+
+    @Test
+    public void insert_matchesEveryPhrase() {
+        PhraseDictionary dictionary = new PhraseDictionary.Builder()
+                .add("银行", "yín", "háng")
+                .add("行走", "xíng", "zǒu")
+                .add("长大", "zhǎng", "dà")
+                .build();
+
+        assertReading(dictionary, "银行", 0, "yín", "háng");
+        assertReading(dictionary, "行走", 0, "xíng", "zǒu");
+        assertReading(dictionary, "长大", 0, "zhǎng", "dà");
+        assertReading(dictionary, "我去银行取钱", 2, "yín", "háng");
+    }
+
+    @Test
+    public void insert_addedAgainReplacesReading() {
+        PhraseDictionary dictionary = new PhraseDictionary.Builder()
+                .add("了解", "le", "jiě")
+                .add("了解", "liǎo", "jiě")
+                .build();
+
+        assertReading(dictionary, "了解", 0, "liǎo", "jiě");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void insert_needsOnePinyinPerCodePoint() {
+        new PhraseDictionary.Builder().add("银行", "yín");
+    }
+
+    @Test
+    public void insert_supplementaryCodePoint() {
+        PhraseDictionary dictionary = new PhraseDictionary.Builder()
+                .add("𠀀字", "kāi", "zì")
+                .build();
+
+        assertReading(dictionary, "𠀀字", 0, "kāi", "zì");
+    }
+
+    @Test
+    public void relocation_siblingSetsOnConflictingSlots() {
+        // every first char has the same children, so their sibling sets collide and each needs its own base
+        String firsts = "一二三四五六七八九十";
+        String seconds = "甲乙丙丁戊己庚辛壬癸";
+        PhraseDictionary.Builder builder = new PhraseDictionary.Builder();
+        for (int i = 0; i < firsts.length(); i++) {
+            for (int j = 0; j < seconds.length(); j++) {
+                builder.add("" + firsts.charAt(i) + seconds.charAt(j), "p" + i, "q" + j);
+            }
+        }
+        PhraseDictionary dictionary = builder.build();
+
+        for (int i = 0; i < firsts.length(); i++) {
+            for (int j = 0; j < seconds.length(); j++) {
+                assertReading(dictionary, "" + firsts.charAt(i) + seconds.charAt(j), 0, "p" + i, "q" + j);
+            }
+        }
+        assertEquals(-1, dictionary.match("甲一", 0));
+    }
+
+    @Test
+    public void relocation_manyPhrasesGrowTheArrays() throws IOException {
+        // enough random phrases to grow the arrays past their initial size and fill most gaps
+        Random random = new Random(42);
+        Map<String, String[]> phrases = new HashMap<String, String[]>();
+        PhraseDictionary.Builder builder = new PhraseDictionary.Builder();
+        for (int i = 0; i < 5000; i++) {
+            int length = 2 + random.nextInt(4);
+            StringBuilder phrase = new StringBuilder();
+            String[] pinyin = new String[length];
+            for (int c = 0; c < length; c++) {
+                int code = random.nextInt(200);
+                phrase.append((char) (0x4e00 + code));
+                pinyin[c] = "s" + code;
+            }
+            phrases.put(phrase.toString(), pinyin);
+            builder.add(phrase.toString(), pinyin);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        builder.writeTo(out);
+        PhraseDictionary dictionary = PhraseDictionary.load(new ByteArrayInputStream(out.toByteArray()));
+        for (Map.Entry<String, String[]> phrase : phrases.entrySet()) {
+            assertReading(dictionary, phrase.getKey(), 0, phrase.getValue());
+        }
+    }
+
+    @Test
+    public void match_takesLongestPhrase() {
+        PhraseDictionary dictionary = new PhraseDictionary.Builder()
+                .add("长", "cháng")
+                .add("长大", "zhǎng", "dà")
+                .add("长大成人", "zhǎng", "dà", "chéng", "rén")
+                .build();
+
+        assertReading(dictionary, "长大成人了", 0, "zhǎng", "dà", "chéng", "rén");
+        assertReading(dictionary, "长大成", 0, "zhǎng", "dà");
+        assertReading(dictionary, "长城", 0, "cháng");
+    }
+
+    @Test
+    public void match_missingKeys() {
+        PhraseDictionary dictionary = new PhraseDictionary.Builder()
+                .add("银行", "yín", "háng")
+                .build();
+
+        assertEquals(-1, dictionary.match("银", 0)); // prefix only
+        assertEquals(-1, dictionary.match("银河", 0)); // known char, unknown child
+        assertEquals(-1, dictionary.match("行银", 0));
+        assertEquals(-1, dictionary.match("abc", 0)); // chars of no phrase
+        assertEquals(-1, dictionary.match("银行", 2)); // at the end
+        assertEquals(-1, new PhraseDictionary.Builder().build().match("银行", 0));
+    }
+
+    @Test
+    public void shippedTable_readsPolyphonesByPhrase() throws IOException {
+        // tests run in the library directory
+        PhraseDictionary dictionary = PhraseDictionary.open(new File("src/main/assets/" + PhraseDictionary.ASSET));
+
+        assertReading(dictionary, "我去银行取钱", 2, "yín", "háng");
+        assertReading(dictionary, "长大", 0, "zhǎng", "dà");
+        assertReading(dictionary, "了解", 0, "liǎo", "jiě");
+    }
+
+    private static void assertReading(PhraseDictionary dictionary, String text, int start, String... pinyin) {
+        int reading = dictionary.match(text, start);
+        assertTrue(text, reading >= 0);
+        assertEquals(text, pinyin.length, dictionary.getReadingLength(reading));
+        for (int i = 0; i < pinyin.length; i++) {
+            assertEquals(text, pinyin[i], dictionary.getPinyin(reading, i));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.uudove.pinyin.widget;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Blocks of {@link DocumentBlocks#split(DocumentBlocks.Document, int)} end at hard breaks, and at line starts in
+ * paragraphs longer than twice the block size.
+ */
+public class DocumentBlocksTest {
+
+    @Test
+    public void split_empty() {
+        assertArrayEquals(new int[]{0}, DocumentBlocks.split(new FakeDocument(0, 10), 5));
+    }
+
+    @Test
+    public void split_hardBreaks() {
+        FakeDocument document = new FakeDocument(20, 10);
+        document.hardBreaks[2] = true; // before the min size, the block goes on
+        document.hardBreaks[6] = true;
+        document.hardBreaks[9] = true;
+        document.hardBreaks[15] = true;
+        assertArrayEquals(new int[]{0, 7, 16, 20}, DocumentBlocks.split(document, 5));
+    }
+
+    @Test
+    public void split_noHardBreaks() {
+        int[] starts = DocumentBlocks.split(new FakeDocument(1000, 7), 20);
+        assertTrue(starts.length - 1 > 1);
+        for (int i = 0; i < starts.length - 1; i++) {
+            assertTrue(starts[i + 1] - starts[i] <= 40);
+            assertTrue(starts[i] % 7 == 0); // at the start of a line
+        }
+        assertTrue(starts[starts.length - 1] == 1000);
+    }
+
+    @Test
+    public void split_noHardBreaks_lineStarts() {
+        // 40 items reach the max size, the last line starts at 35
+        assertArrayEquals(new int[]{0, 35, 70, 100}, DocumentBlocks.split(new FakeDocument(100, 7), 20));
+    }
+
+    @Test
+    public void split_noHardBreaks_noWidth() {
+        // lines are not known, blocks end after the item at the max size
+        assertArrayEquals(new int[]{0, 40, 80, 100}, DocumentBlocks.split(new FakeDocument(100, 0), 20));
+    }
+
+    @Test
+    public void split_noHardBreaks_oneLine() {
+        // all items fit on one line, no line start to split at
+        assertArrayEquals(new int[]{0, 40, 50}, DocumentBlocks.split(new FakeDocument(50, 1000), 20));
+    }
+
+    @Test
+    public void split_hardBreakAfterMaxSize() {
+        FakeDocument document = new FakeDocument(60, 0);
+        document.hardBreaks[44] = true;
+        assertArrayEquals(new int[]{0, 40, 60}, DocumentBlocks.split(document, 20));
+    }
+
+    /**
+     * Items of the same width, a fixed number of them on a line. No width is known if itemsPerLine is 0.
+     */
+    private static class FakeDocument implements DocumentBlocks.Document {
+
+        final boolean[] hardBreaks;
+        final int itemsPerLine;
+
+        FakeDocument(int count, int itemsPerLine) {
+            this.hardBreaks = new boolean[count];
+            this.itemsPerLine = itemsPerLine;
+        }
+
+        @Override
+        public int getItemCount() {
+            return hardBreaks.length;
+        }
+
+        @Override
+        public boolean isHardBreak(int item) {
+            return hardBreaks[item];
+        }
+
+        @Override
+        public int getLastLineStart(int start, int end) {
+            if (itemsPerLine == 0) {
+                return start;
+            }
+            int lineStart = start;
+            for (int i = start; i < end; i++) {
+                if (i - lineStart == itemsPerLine || (i > start && hardBreaks[i - 1])) {
+                    lineStart = i;
+                }
+            }
+            return lineStart;
+        }
+    }
+}
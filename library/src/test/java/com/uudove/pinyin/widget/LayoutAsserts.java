@@ -0,0 +1,43 @@
+package com.uudove.pinyin.widget;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Assertions on {@link PinyinLayout}s, shared by the layout tests.
+ */
+final class LayoutAsserts {
+
+    private LayoutAsserts() {
+    }
+
+    /**
+     * Assert that two layouts place every line and item at the same position.
+     */
+    static void assertSameLayout(PinyinLayout expected, PinyinLayout actual) {
+        assertEquals("available width", expected.getAvailableWidth(), actual.getAvailableWidth());
+        assertEquals("width", expected.getWidth(), actual.getWidth());
+        assertEquals("height", expected.getHeight(), actual.getHeight());
+        assertEquals("item count", expected.getItemCount(), actual.getItemCount());
+        assertArrayEquals("line starts", lineValues(expected, 0), lineValues(actual, 0));
+        assertArrayEquals("line tops", lineValues(expected, 1), lineValues(actual, 1));
+        assertArrayEquals("line widths", lineValues(expected, 2), lineValues(actual, 2));
+        int[] expectedLefts = new int[expected.getItemCount()];
+        int[] actualLefts = new int[actual.getItemCount()];
+        for (int i = 0; i < expectedLefts.length; i++) {
+            expectedLefts[i] = expected.getItemLeft(i);
+            actualLefts[i] = actual.getItemLeft(i);
+        }
+        assertArrayEquals("item lefts", expectedLefts, actualLefts);
+    }
+
+    // 0: line starts, 1: line tops, 2: line widths
+    private static int[] lineValues(PinyinLayout layout, int value) {
+        int[] values = new int[layout.getLineCount()];
+        for (int line = 0; line < values.length; line++) {
+            values[line] = value == 0 ? layout.getLineStart(line)
+                    : value == 1 ? layout.getLineTop(line) : layout.getLineWidth(line);
+        }
+        return values;
+    }
+}
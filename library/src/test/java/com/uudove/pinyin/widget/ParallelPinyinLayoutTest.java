@@ -0,0 +1,141 @@
+package com.uudove.pinyin.widget;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.uudove.pinyin.widget.LayoutAsserts.assertSameLayout;
+
+/**
+ * Lines broken in parts, on several threads or not, must be the same as lines broken at once.
+ */
+public class ParallelPinyinLayoutTest {
+
+    private static final int TEXT_HEIGHT = 40;
+    private static final int PINYIN_HEIGHT = 26;
+    private static final int PINYIN_TEXT_SPACING = 14;
+    private static final int LINE_SPACING = 16;
+    private static final int ITEM_SPACING = 6;
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(3);
+
+    @AfterClass
+    public static void shutDown() {
+        EXECUTOR.shutdown();
+    }
+
+    @Test
+    public void create_sameAsOneThread() {
+        Random random = new Random(20);
+        for (int round = 0; round < 20; round++) {
+            Items items = Items.random(random, 1000 + random.nextInt(30000), 20 + random.nextInt(200));
+            int width = 300 + random.nextInt(1200);
+            assertSameLayout(createAtOnce(items, width), createParallel(items, width, EXECUTOR));
+        }
+    }
+
+    @Test
+    public void create_rejectingExecutorSameAsOneThread() {
+        Executor rejecting = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+        Items items = Items.random(new Random(7), 10000, 100);
+        assertSameLayout(createAtOnce(items, 800), createParallel(items, 800, rejecting));
+    }
+
+    @Test
+    public void create_withoutHardBreaksSameAsOneThread() {
+        Items items = Items.random(new Random(3), 5000, Integer.MAX_VALUE);
+        assertSameLayout(createAtOnce(items, 800), createParallel(items, 800, EXECUTOR));
+    }
+
+    @Test
+    public void createPartAndJoin_sameAsCreate() {
+        // parts of any size, split after each hard break
+        Random random = new Random(11);
+        for (int round = 0; round < 50; round++) {
+            Items items = Items.random(random, 1 + random.nextInt(500), 1 + random.nextInt(30));
+            int width = 100 + random.nextInt(800);
+
+            int[] partStarts = new int[items.hardBreaks.length + 2];
+            int partCount = 1;
+            for (int hardBreak : items.hardBreaks) {
+                if (hardBreak + 1 < items.count && random.nextBoolean()) {
+                    partStarts[partCount++] = hardBreak + 1;
+                }
+            }
+            partStarts[partCount] = items.count;
+
+            int[] itemLeft = new int[items.count];
+            PinyinLayout[] parts = new PinyinLayout[partCount];
+            for (int part = partCount - 1; part >= 0; part--) { // in any order
+                parts[part] = PinyinLayout.createPart(partStarts[part], partStarts[part + 1], items.count,
+                        items.textWidths, items.pinyinWidths, items.hardBreaks, TEXT_HEIGHT, PINYIN_HEIGHT,
+                        PINYIN_TEXT_SPACING, LINE_SPACING, ITEM_SPACING, width, itemLeft);
+            }
+            assertSameLayout(createAtOnce(items, width), PinyinLayout.join(parts, items.count));
+        }
+    }
+
+    @Test
+    public void create_itemsWiderThanTheLine() {
+        Items items = Items.random(new Random(5), 3000, 40);
+        assertSameLayout(createAtOnce(items, 10), createParallel(items, 10, EXECUTOR));
+    }
+
+    private static PinyinLayout createAtOnce(Items items, int width) {
+        return PinyinLayout.create(items.count, items.textWidths, items.pinyinWidths, items.hardBreaks, TEXT_HEIGHT,
+                PINYIN_HEIGHT, PINYIN_TEXT_SPACING, LINE_SPACING, ITEM_SPACING, width);
+    }
+
+    private static PinyinLayout createParallel(Items items, int width, Executor executor) {
+        return ParallelPinyinLayout.create(items.count, items.textWidths, items.pinyinWidths, items.hardBreaks,
+                TEXT_HEIGHT, PINYIN_HEIGHT, PINYIN_TEXT_SPACING, LINE_SPACING, ITEM_SPACING, width, executor);
+    }
+
+    /**
+     * Widths of random items, with hard breaks.
+     */
+    static final class Items {
+        final int count;
+        final int[] textWidths;
+        final int[] pinyinWidths;
+        final int[] hardBreaks;
+
+        Items(int count, int[] textWidths, int[] pinyinWidths, int[] hardBreaks) {
+            this.count = count;
+            this.textWidths = textWidths;
+            this.pinyinWidths = pinyinWidths;
+            this.hardBreaks = hardBreaks;
+        }
+
+        /**
+         * @param meanParagraph mean number of items between two hard breaks.
+         */
+        static Items random(Random random, int count, int meanParagraph) {
+            int[] textWidths = new int[count];
+            int[] pinyinWidths = new int[count];
+            int[] breaks = new int[count];
+            int breakCount = 0;
+            for (int i = 0; i < count; i++) {
+                boolean punctuation = random.nextInt(8) == 0;
+                textWidths[i] = punctuation ? 20 : 40 * (1 + random.nextInt(2));
+                pinyinWidths[i] = punctuation ? 0 : 20 + random.nextInt(60);
+                if (random.nextInt(meanParagraph) == 0) {
+                    breaks[breakCount++] = i;
+                }
+            }
+            int[] hardBreaks = new int[breakCount];
+            System.arraycopy(breaks, 0, hardBreaks, 0, breakCount);
+            return new Items(count, textWidths, pinyinWidths, hardBreaks);
+        }
+    }
+}
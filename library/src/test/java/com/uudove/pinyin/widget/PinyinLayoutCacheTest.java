@@ -0,0 +1,272 @@
+package com.uudove.pinyin.widget;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static com.uudove.pinyin.widget.LayoutAsserts.assertSameLayout;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the layout files of {@link PinyinLayoutCache}. Layouts are made from given widths, nothing is measured.
+ */
+public class PinyinLayoutCacheTest {
+
+    private static final PrecomputedPinyinText.Params PARAMS = new PrecomputedPinyinText.Params(30, 24, 12, 8, null);
+    private static final int WIDTH = 200;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip_restoresMeasurementsAndLines() throws IOException {
+        File directory = mFolder.newFolder();
+        PrecomputedPinyinText.Content content = content("很高兴", "认识\n", "你！");
+        PrecomputedPinyinText text = layOut(content, PARAMS, WIDTH);
+        new PinyinLayoutCache(directory).put(content, text);
+
+        // a new cache, like after the process restarted
+        PinyinLayoutCache cache = new PinyinLayoutCache(directory);
+        PrecomputedPinyinText restored = cache.get(content, PARAMS, WIDTH);
+        assertNotNull(restored);
+        assertEquals(1, cache.hitCount());
+        assertEquals(text.getTextHeight(), restored.getTextHeight());
+        assertEquals(text.getPinyinHeight(), restored.getPinyinHeight());
+        assertEquals(text.getPinyinDescent(), restored.getPinyinDescent());
+        assertEquals(text.getItemCount(), restored.getItemCount());
+        for (int i = 0; i < text.getItemCount(); i++) {
+            assertEquals(text.getTextWidth(i), restored.getTextWidth(i));
+            assertEquals(text.getPinyinWidth(i), restored.getPinyinWidth(i));
+        }
+        assertSameLayout(text.getLayout(), restored.getLayout());
+    }
+
+    @Test
+    public void roundTrip_otherStyleOrWidthIsNotRestored() throws IOException {
+        File directory = mFolder.newFolder();
+        PinyinLayoutCache cache = new PinyinLayoutCache(directory);
+        PrecomputedPinyinText.Content content = content("很高兴", "认识", "你");
+        cache.put(content, layOut(content, PARAMS, WIDTH));
+
+        assertNull(cache.get(content, new PrecomputedPinyinText.Params(32, 24, 12, 8, null), WIDTH));
+        assertNull(cache.get(content, PARAMS, WIDTH + 1));
+        assertNull(cache.get(content("很高兴", "认识", "他"), PARAMS, WIDTH));
+        assertNotNull(cache.get(content, PARAMS, WIDTH));
+        assertEquals(3, cache.missCount());
+    }
+
+    @Test
+    public void headerMismatch_isNotRestored() throws IOException {
+        File directory = mFolder.newFolder();
+        PinyinLayoutCache cache = new PinyinLayoutCache(directory);
+        PrecomputedPinyinText.Content content = content("很高兴", "认识", "你");
+        PrecomputedPinyinText text = layOut(content, PARAMS, WIDTH);
+        cache.put(content, text);
+        File file = singleFile(directory);
+
+        writeInt(file, 0, 0x50594C31); // file of the previous format, deleted
+        assertNull(cache.get(content, PARAMS, WIDTH));
+        assertFalse(file.exists());
+
+        cache.put(content, text);
+        writeInt(file, 20, PARAMS.getTextSize() + 1); // another text size with the same file name, kept
+        assertNull(cache.get(content, PARAMS, WIDTH));
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void truncatedFile_isDeleted() throws IOException {
+        File directory = mFolder.newFolder();
+        PinyinLayoutCache cache = new PinyinLayoutCache(directory);
+        PrecomputedPinyinText.Content content = content("很高兴", "认识", "你");
+        PrecomputedPinyinText text = layOut(content, PARAMS, WIDTH);
+
+        long[] lengths = {-4, 10, 0}; // last line start missing, in the header, empty
+        for (long length : lengths) {
+            cache.put(content, text);
+            File file = singleFile(directory);
+            setLength(file, length < 0 ? file.length() + length : length);
+            assertNull(cache.get(content, PARAMS, WIDTH));
+            assertFalse(file.exists());
+        }
+    }
+
+    @Test
+    public void corruptFile_isDeleted() throws IOException {
+        File directory = mFolder.newFolder();
+        PinyinLayoutCache cache = new PinyinLayoutCache(directory);
+        PrecomputedPinyinText.Content content = content("很高兴", "认识", "你", "我", "是", "学生");
+        PrecomputedPinyinText text = layOut(content, PARAMS, WIDTH);
+        int count = content.mCount;
+        int lineCount = text.getLayout().getLineCount();
+        assertTrue(lineCount >= 2);
+        int itemLeft = 68 + count * 8;
+        int lineStart = 68 + count * 12 + lineCount * 8;
+
+        int[][] corruptions = {
+                {0, 0}, // magic
+                {64, 0}, // no lines
+                {64, 1000}, // more lines than the file has
+                {lineStart, 1}, // first line doesn't start at the first item
+                {lineStart + 4, text.getLayout().getLineStart(2) + 1}, // lines out of order
+                {lineStart + lineCount * 4, count - 1}, // last item on no line
+                {lineStart + lineCount * 4, count + 1}, // line past the items
+                {itemLeft + 4, -1}, // item left of the line
+        };
+        for (int[] corruption : corruptions) {
+            cache.put(content, text);
+            File file = singleFile(directory);
+            writeInt(file, corruption[0], corruption[1]);
+            assertNull(cache.get(content, PARAMS, WIDTH));
+            assertFalse(file.exists());
+        }
+
+        cache.put(content, text);
+        assertNotNull(cache.get(content, PARAMS, WIDTH));
+    }
+
+    @Test
+    public void corruptFile_isReplacedByPut() throws IOException {
+        File directory = mFolder.newFolder();
+        PinyinLayoutCache cache = new PinyinLayoutCache(directory);
+        PrecomputedPinyinText.Content content = content("很高兴", "认识", "你");
+        PrecomputedPinyinText text = layOut(content, PARAMS, WIDTH);
+        cache.put(content, text);
+        setLength(singleFile(directory), 30);
+        assertNull(cache.get(content, PARAMS, WIDTH));
+
+        cache.put(content, text);
+        assertNotNull(cache.get(content, PARAMS, WIDTH));
+    }
+
+    @Test
+    public void trim_deletesLeastRecentlyUsed() throws IOException {
+        File directory = mFolder.newFolder();
+        PrecomputedPinyinText.Content first = content("一", "二", "三");
+        PrecomputedPinyinText.Content second = content("四", "五", "六");
+        PrecomputedPinyinText.Content third = content("七", "八", "九");
+
+        new PinyinLayoutCache(directory).put(first, layOut(first, PARAMS, WIDTH));
+        long fileSize = singleFile(directory).length();
+        // room for two files of the same size
+        PinyinLayoutCache cache = new PinyinLayoutCache(directory, fileSize * 2 + fileSize / 2);
+        File firstFile = singleFile(directory);
+        cache.put(second, layOut(second, PARAMS, WIDTH));
+        File secondFile = otherFile(directory, firstFile);
+
+        // the first one is older, but used again
+        long now = System.currentTimeMillis();
+        assertTrue(firstFile.setLastModified(now - 20000));
+        assertTrue(secondFile.setLastModified(now - 10000));
+        assertNotNull(cache.get(first, PARAMS, WIDTH));
+
+        cache.put(third, layOut(third, PARAMS, WIDTH));
+        assertEquals(2, directory.listFiles().length);
+        assertFalse(secondFile.exists());
+        assertNotNull(cache.get(first, PARAMS, WIDTH));
+        assertNull(cache.get(second, PARAMS, WIDTH));
+        assertNotNull(cache.get(third, PARAMS, WIDTH));
+    }
+
+    @Test
+    public void clear_deletesAllLayouts() throws IOException {
+        File directory = mFolder.newFolder();
+        PinyinLayoutCache cache = new PinyinLayoutCache(directory);
+        PrecomputedPinyinText.Content content = content("很高兴", "认识", "你");
+        cache.put(content, layOut(content, PARAMS, WIDTH));
+        File other = new File(directory, "other.txt");
+        assertTrue(other.createNewFile());
+
+        cache.clear();
+        assertNull(cache.get(content, PARAMS, WIDTH));
+        assertTrue(other.exists()); // only layout files are deleted
+    }
+
+    // items with 1 to 2 syllables of pinyin per item
+    private static PrecomputedPinyinText.Content content(String... texts) {
+        int count = texts.length;
+        int[] textStarts = new int[count + 1];
+        int[] pinyinStarts = new int[count + 1];
+        StringBuilder text = new StringBuilder();
+        StringBuilder pinyin = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(texts[i]);
+            pinyin.append("pin yin".substring(0, i % 2 == 0 ? 3 : 7));
+            textStarts[i + 1] = text.length();
+            pinyinStarts[i + 1] = pinyin.length();
+        }
+        return new PrecomputedPinyinText.Content(count, text.toString().toCharArray(), textStarts,
+                pinyin.toString().toCharArray(), pinyinStarts);
+    }
+
+    // lays out with fixed advances instead of measuring
+    private static PrecomputedPinyinText layOut(PrecomputedPinyinText.Content content,
+                                                PrecomputedPinyinText.Params params, int width) {
+        int count = content.mCount;
+        int[] textWidths = new int[count];
+        int[] pinyinWidths = new int[count];
+        int breakCount = 0;
+        for (int i = 0; i < count; i++) {
+            textWidths[i] = (content.mTextStarts[i + 1] - content.mTextStarts[i]) * params.getTextSize();
+            pinyinWidths[i] = (content.mPinyinStarts[i + 1] - content.mPinyinStarts[i]) * params.getPinyinTextSize()
+                    / 2;
+            if (content.mText[content.mTextStarts[i + 1] - 1] == '\n') {
+                breakCount++;
+            }
+        }
+        int[] hardBreaks = new int[breakCount];
+        breakCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (content.mText[content.mTextStarts[i + 1] - 1] == '\n') {
+                hardBreaks[breakCount++] = i;
+            }
+        }
+        int textHeight = params.getTextSize();
+        int pinyinHeight = params.getPinyinTextSize();
+        int pinyinDescent = params.getPinyinTextSize() / 4;
+        PinyinLayout layout = PinyinLayout.create(count, textWidths, pinyinWidths, hardBreaks, textHeight,
+                pinyinHeight, pinyinDescent + params.getPinyinTextSpacing(), params.getHorizontalSpacing(),
+                params.getVerticalSpacing(), width);
+        return PrecomputedPinyinText.restore(params, content, textHeight, pinyinHeight, pinyinDescent, textWidths,
+                pinyinWidths, layout);
+    }
+
+    private static File singleFile(File directory) {
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    private static File otherFile(File directory, File file) {
+        File[] files = directory.listFiles();
+        assertEquals(2, files.length);
+        return files[0].equals(file) ? files[1] : files[0];
+    }
+
+    private static void writeInt(File file, int offset, int value) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(offset);
+            raf.writeInt(value);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void setLength(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+}
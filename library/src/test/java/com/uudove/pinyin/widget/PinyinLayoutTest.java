@@ -0,0 +1,250 @@
+package com.uudove.pinyin.widget;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.uudove.pinyin.widget.LayoutAsserts.assertSameLayout;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Lines updated after a change by {@link PinyinLayout#update(PinyinLayout, int, int, int, int, int[], int[], int[],
+ * int[])} must be the same as lines broken again from scratch, and the dirty area must cover every line that looks
+ * different.
+ */
+public class PinyinLayoutTest {
+
+    private static final int TEXT_HEIGHT = 40;
+    private static final int PINYIN_HEIGHT = 26;
+    private static final int PINYIN_TEXT_SPACING = 14;
+    private static final int LINE_SPACING = 16;
+    private static final int ITEM_SPACING = 6;
+    private static final int WIDTH = 500;
+
+    @Test
+    public void update_insert() {
+        Items items = Items.random(new Random(1), 60, 0);
+        assertUpdate(items, 0, 0, Items.random(new Random(2), 3, 0)); // at the start
+        assertUpdate(items, 25, 25, Items.random(new Random(3), 1, 0)); // in a line
+        assertUpdate(items, 60, 60, Items.random(new Random(4), 10, 0)); // appended
+        assertUpdate(items, 30, 30, Items.random(new Random(5), 200, 0)); // many lines
+    }
+
+    @Test
+    public void update_remove() {
+        Items items = Items.random(new Random(1), 60, 0);
+        assertUpdate(items, 0, 1, Items.EMPTY); // first item, the rest moves back
+        assertUpdate(items, 20, 23, Items.EMPTY);
+        assertUpdate(items, 59, 60, Items.EMPTY); // last item
+        assertUpdate(items, 5, 55, Items.EMPTY); // many lines
+        assertUpdate(items, 0, 60, Items.EMPTY); // all
+    }
+
+    @Test
+    public void update_replace() {
+        Items items = Items.random(new Random(1), 60, 0);
+        assertUpdate(items, 10, 11, Items.widths(1, 1)); // narrower
+        int lineStart = create(items).getLineStart(2);
+        assertUpdate(items, lineStart, lineStart + 1, Items.widths(1, 1)); // moves back to the previous line
+        assertUpdate(items, 10, 11, Items.widths(WIDTH, 10)); // a line by itself
+        assertUpdate(items, 10, 11, Items.widths(WIDTH * 2, 10)); // wider than a line
+        assertUpdate(items, 30, 32, Items.random(new Random(6), 2, 0)); // same count
+        assertUpdate(items, 30, 32, Items.random(new Random(7), 5, 0)); // more items
+    }
+
+    @Test
+    public void update_hardBreaks() {
+        Items items = Items.random(new Random(1), 80, 6);
+        assertTrue(items.hardBreakCount() > 0);
+        for (int i = 0; i < items.count; i++) {
+            // toggle the hard break of one item
+            Items replacement = items.slice(i, i + 1);
+            replacement.hardBreak[0] = !replacement.hardBreak[0];
+            assertUpdate(items, i, i + 1, replacement);
+        }
+        assertUpdate(items, 10, 10, Items.widths(20, 0).withHardBreak()); // inserted break
+        assertUpdate(items, 0, 0, Items.widths(20, 0).withHardBreak()); // empty first line
+        assertUpdate(items, 80, 80, Items.widths(20, 0).withHardBreak()); // trailing break
+    }
+
+    @Test
+    public void update_fromEmpty() {
+        assertUpdate(Items.EMPTY, 0, 0, Items.random(new Random(8), 40, 5));
+    }
+
+    @Test
+    public void update_randomEditsInARow() {
+        Random random = new Random(42);
+        Items items = Items.random(random, 300, 20);
+        PinyinLayout layout = create(items);
+        for (int edit = 0; edit < 500; edit++) {
+            int start = random.nextInt(items.count + 1);
+            int end = Math.min(items.count, start + (random.nextInt(4) == 0 ? random.nextInt(60) : random.nextInt(3)));
+            Items replacement = Items.random(random, random.nextInt(4) == 0 ? random.nextInt(60) : random.nextInt(3),
+                    random.nextInt(3) == 0 ? 3 : 20);
+            Items changed = items.replace(start, end, replacement);
+
+            // each update starts from the last updated layout, so errors add up
+            int[] dirty = new int[4];
+            PinyinLayout updated = PinyinLayout.update(layout, start, end, start + replacement.count, changed.count,
+                    changed.textWidths, changed.pinyinWidths, changed.hardBreaks(), dirty);
+            assertSameLayout(create(changed), updated);
+            assertDirtyCoversChanges(layout, updated, start, end, start + replacement.count, dirty);
+            items = changed;
+            layout = updated;
+        }
+    }
+
+    private static void assertUpdate(Items items, int start, int end, Items replacement) {
+        Items changed = items.replace(start, end, replacement);
+        PinyinLayout old = create(items);
+        int[] dirty = new int[4];
+        PinyinLayout updated = PinyinLayout.update(old, start, end, start + replacement.count, changed.count,
+                changed.textWidths, changed.pinyinWidths, changed.hardBreaks(), dirty);
+        assertSameLayout(create(changed), updated);
+        assertDirtyCoversChanges(old, updated, start, end, start + replacement.count, dirty);
+    }
+
+    private static PinyinLayout create(Items items) {
+        return PinyinLayout.create(items.count, items.textWidths, items.pinyinWidths, items.hardBreaks(),
+                TEXT_HEIGHT, PINYIN_HEIGHT, PINYIN_TEXT_SPACING, LINE_SPACING, ITEM_SPACING, WIDTH);
+    }
+
+    // lines not inside the dirty rows must be drawn the same in both layouts: same top, items and lefts
+    private static void assertDirtyCoversChanges(PinyinLayout old, PinyinLayout updated, int start, int oldEnd,
+                                                 int newEnd, int[] dirty) {
+        assertEquals(0, dirty[0]);
+        assertTrue(dirty[2] >= Math.max(old.getWidth(), updated.getWidth()));
+        int shift = newEnd - oldEnd;
+        for (int line = 0; line < updated.getLineCount(); line++) {
+            if (!isInside(updated, line, dirty) && !hasSameLine(updated, line, old, start, newEnd, -shift)) {
+                fail("line " + line + " changed outside of the dirty area");
+            }
+        }
+        for (int line = 0; line < old.getLineCount(); line++) {
+            if (!isInside(old, line, dirty) && !hasSameLine(old, line, updated, start, oldEnd, shift)) {
+                fail("old line " + line + " is left outside of the dirty area");
+            }
+        }
+    }
+
+    private static boolean isInside(PinyinLayout layout, int line, int[] dirty) {
+        int top = layout.getLineTop(line);
+        return top >= dirty[1] && top + PINYIN_HEIGHT + PINYIN_TEXT_SPACING + TEXT_HEIGHT <= dirty[3];
+    }
+
+    // items [changeStart, changeEnd) of layout are changed ones, the others are at item + shift in other
+    private static boolean hasSameLine(PinyinLayout layout, int line, PinyinLayout other, int changeStart,
+                                       int changeEnd, int shift) {
+        int start = layout.getLineStart(line);
+        int end = layout.getLineEnd(line);
+        int top = layout.getLineTop(line);
+        for (int otherLine = 0; otherLine < other.getLineCount(); otherLine++) {
+            if (other.getLineTop(otherLine) != top) {
+                continue;
+            }
+            int otherStart = other.getLineStart(otherLine);
+            if (other.getLineEnd(otherLine) - otherStart != end - start) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                if (i >= changeStart && i < changeEnd) {
+                    return false;
+                }
+                int otherItem = i < changeStart ? i : i + shift;
+                if (otherItem != otherStart + i - start || other.getItemLeft(otherItem) != layout.getItemLeft(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return end == start; // nothing drawn
+    }
+
+    /**
+     * Widths and hard breaks of items.
+     */
+    private static final class Items {
+        static final Items EMPTY = new Items(0);
+
+        final int count;
+        final int[] textWidths;
+        final int[] pinyinWidths;
+        final boolean[] hardBreak;
+
+        Items(int count) {
+            this.count = count;
+            textWidths = new int[count];
+            pinyinWidths = new int[count];
+            hardBreak = new boolean[count];
+        }
+
+        /**
+         * @param meanParagraph mean number of items between two hard breaks, 0 for none.
+         */
+        static Items random(Random random, int count, int meanParagraph) {
+            Items items = new Items(count);
+            for (int i = 0; i < count; i++) {
+                items.textWidths[i] = random.nextInt(8) == 0 ? 20 : 40 * (1 + random.nextInt(2));
+                items.pinyinWidths[i] = random.nextInt(90);
+                items.hardBreak[i] = meanParagraph > 0 && random.nextInt(meanParagraph) == 0;
+            }
+            return items;
+        }
+
+        static Items widths(int textWidth, int pinyinWidth) {
+            Items items = new Items(1);
+            items.textWidths[0] = textWidth;
+            items.pinyinWidths[0] = pinyinWidth;
+            return items;
+        }
+
+        Items withHardBreak() {
+            Items items = slice(0, count);
+            items.hardBreak[count - 1] = true;
+            return items;
+        }
+
+        Items slice(int start, int end) {
+            return replace(end, count, EMPTY).replace(0, start, EMPTY);
+        }
+
+        // items [start, end) replaced by the replacement
+        Items replace(int start, int end, Items replacement) {
+            Items items = new Items(count - (end - start) + replacement.count);
+            copy(this, 0, items, 0, start);
+            copy(replacement, 0, items, start, replacement.count);
+            copy(this, end, items, start + replacement.count, count - end);
+            return items;
+        }
+
+        private static void copy(Items from, int fromIndex, Items to, int toIndex, int length) {
+            System.arraycopy(from.textWidths, fromIndex, to.textWidths, toIndex, length);
+            System.arraycopy(from.pinyinWidths, fromIndex, to.pinyinWidths, toIndex, length);
+            System.arraycopy(from.hardBreak, fromIndex, to.hardBreak, toIndex, length);
+        }
+
+        int hardBreakCount() {
+            int breakCount = 0;
+            for (boolean b : hardBreak) {
+                if (b) {
+                    breakCount++;
+                }
+            }
+            return breakCount;
+        }
+
+        int[] hardBreaks() {
+            int[] hardBreaks = new int[hardBreakCount()];
+            int breakCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (hardBreak[i]) {
+                    hardBreaks[breakCount++] = i;
+                }
+            }
+            return hardBreaks;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.uudove.pinyin.widget;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes page images into a PDF, a page per image scaled to the page size. Pages are written as they are added, so
+ * only one page image is in memory at a time.<br/>
+ * Images are compressed losslessly with Flate, pages are mostly white and compress well.<br/>
+ * Pages are raster images, not vector text: text can't be selected or searched, and prints only as sharp as the
+ * image resolution. Embedding CJK fonts would need font subsetting, which this writer doesn't do.
+ *
+ * @author wangjingtao
+ */
+public final class PdfImageWriter implements Closeable {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    // objects 1 and 2 are the catalog and the page tree, written last since they list all pages
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+
+    private final OutputStream mOut;
+    private final float mPageWidth;
+    private final float mPageHeight;
+
+    private long mPosition;
+    private final List<Long> mOffsets = new ArrayList<Long>(); // offset of each object, by object number - 1
+    private final List<Integer> mPageObjects = new ArrayList<Integer>();
+
+    /**
+     * @param out        stream to write to, closed by {@link #close()}.
+     * @param pageWidth  page width in points (1/72 inch).
+     * @param pageHeight page height in points.
+     */
+    public PdfImageWriter(OutputStream out, float pageWidth, float pageHeight) throws IOException {
+        mOut = out;
+        mPageWidth = pageWidth;
+        mPageHeight = pageHeight;
+        mOffsets.add(0L); // catalog
+        mOffsets.add(0L); // page tree
+        write("%PDF-1.4\n");
+    }
+
+    /**
+     * Add a page showing the image.
+     */
+    public void addPage(BufferedImage image) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        // RGB rows, top to bottom
+        ByteArrayOutputStream pixels = new ByteArrayOutputStream(width * height / 8);
+        DeflaterOutputStream deflater = new DeflaterOutputStream(pixels, new Deflater(Deflater.BEST_SPEED));
+        int[] row = new int[width];
+        byte[] rgb = new byte[width * 3];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                rgb[x * 3] = (byte) (row[x] >> 16);
+                rgb[x * 3 + 1] = (byte) (row[x] >> 8);
+                rgb[x * 3 + 2] = (byte) row[x];
+            }
+            deflater.write(rgb);
+        }
+        deflater.close();
+
+        int imageObject = startObject();
+        write("<< /Type /XObject /Subtype /Image /Width " + width + " /Height " + height
+                + " /ColorSpace /DeviceRGB /BitsPerComponent 8 /Filter /FlateDecode /Length " + pixels.size()
+                + " >>\nstream\n");
+        pixels.writeTo(mOut);
+        mPosition += pixels.size();
+        write("\nendstream\nendobj\n");
+
+        String content = "q " + number(mPageWidth) + " 0 0 " + number(mPageHeight) + " 0 0 cm /Im Do Q";
+        int contentObject = startObject();
+        write("<< /Length " + content.length() + " >>\nstream\n" + content + "\nendstream\nendobj\n");
+
+        int pageObject = startObject();
+        write("<< /Type /Page /Parent " + PAGES + " 0 R /MediaBox [0 0 " + number(mPageWidth) + " "
+                + number(mPageHeight) + "] /Resources << /XObject << /Im " + imageObject + " 0 R >> >> /Contents "
+                + contentObject + " 0 R >>\nendobj\n");
+        mPageObjects.add(pageObject);
+    }
+
+    /**
+     * Write the page tree and the cross-reference table, and close the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            StringBuilder kids = new StringBuilder();
+            for (int page : mPageObjects) {
+                kids.append(page).append(" 0 R ");
+            }
+            mOffsets.set(PAGES - 1, mPosition);
+            write(PAGES + " 0 obj\n<< /Type /Pages /Kids [" + kids + "] /Count " + mPageObjects.size()
+                    + " >>\nendobj\n");
+            mOffsets.set(CATALOG - 1, mPosition);
+            write(CATALOG + " 0 obj\n<< /Type /Catalog /Pages " + PAGES + " 0 R >>\nendobj\n");
+
+            long xref = mPosition;
+            StringBuilder table = new StringBuilder();
+            table.append("xref\n0 ").append(mOffsets.size() + 1).append("\n0000000000 65535 f \n");
+            for (long offset : mOffsets) {
+                table.append(String.format(Locale.US, "%010d 00000 n \n", offset));
+            }
+            table.append("trailer\n<< /Size ").append(mOffsets.size() + 1).append(" /Root ").append(CATALOG)
+                    .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+            write(table.toString());
+        } finally {
+            mOut.close();
+        }
+    }
+
+    // start the next object, returns its number
+    private int startObject() throws IOException {
+        mOffsets.add(mPosition);
+        int object = mOffsets.size();
+        write(object + " 0 obj\n");
+        return object;
+    }
+
+    private void write(String s) throws IOException {
+        byte[] bytes = s.getBytes(ASCII);
+        mOut.write(bytes);
+        mPosition += bytes.length;
+    }
+
+    private static String number(float value) {
+        return String.format(Locale.US, "%.2f", value);
+    }
+}
@@ -0,0 +1,226 @@
+package com.uudove.pinyin.widget;
+
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Renders many documents to PNG or PDF files on several threads, and reports pages per second.
+ * <pre>
+ * java -jar renderer.jar &lt;input dir or files...&gt; &lt;output dir&gt; [--format png|pdf] [--threads N] [--dpi 150]
+ *     [--font Serif] [--text-size 18] [--spacing 6]
+ * </pre>
+ * Inputs are read by {@link PinyinDocument#read(File)}. Pages are A4, sizes are in points and converted to pixels
+ * at the dpi. A PNG is written per page (name-1.png, name-2.png...), a PDF per document.
+ *
+ * @author wangjingtao
+ */
+public final class PinyinBatchRenderer {
+
+    /**
+     * Output file format.
+     */
+    public enum Format {
+        PNG, PDF
+    }
+
+    // A4 in points, margins of half an inch
+    private static final float PAGE_WIDTH = 595.28F;
+    private static final float PAGE_HEIGHT = 841.89F;
+    private static final float MARGIN = 36F;
+
+    private final PinyinPageRenderer mRenderer;
+    private final Format mFormat;
+    private final float mDpi;
+
+    /**
+     * @param renderer renderer set up for the page size in pixels.
+     * @param format   output file format.
+     * @param dpi      resolution of the page images, for the page size of PDF files.
+     */
+    public PinyinBatchRenderer(PinyinPageRenderer renderer, Format format, float dpi) {
+        mRenderer = renderer;
+        mFormat = format;
+        mDpi = dpi;
+    }
+
+    /**
+     * Render all documents into the output directory.
+     *
+     * @param threadCount number of documents rendered at the same time.
+     *
+     * @return documents and pages rendered, and the time taken.
+     */
+    public Result render(List<File> inputs, final File outputDir, int threadCount) throws IOException {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Can't create " + outputDir);
+        }
+
+        final AtomicInteger pageCount = new AtomicInteger();
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>(inputs.size());
+            for (final File input : inputs) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        pageCount.addAndGet(renderDocument(PinyinDocument.read(input), outputDir));
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Result(inputs.size(), pageCount.get(), System.nanoTime() - start);
+    }
+
+    // render a document page by page, returns the number of pages
+    private int renderDocument(PinyinDocument document, File outputDir) throws IOException {
+        PinyinPageRenderer.Pages pages = mRenderer.paginate(document);
+        int pageCount = pages.getPageCount();
+        if (mFormat == Format.PNG) {
+            for (int page = 0; page < pageCount; page++) {
+                File file = new File(outputDir, document.getName() + "-" + (page + 1) + ".png");
+                if (!ImageIO.write(mRenderer.renderPage(pages, page), "png", file)) {
+                    throw new IOException("No PNG writer");
+                }
+            }
+        } else {
+            File file = new File(outputDir, document.getName() + ".pdf");
+            PdfImageWriter writer = new PdfImageWriter(new BufferedOutputStream(new FileOutputStream(file)),
+                    mRenderer.getPageWidth() * 72F / mDpi, mRenderer.getPageHeight() * 72F / mDpi);
+            try {
+                for (int page = 0; page < pageCount; page++) {
+                    BufferedImage image = mRenderer.renderPage(pages, page);
+                    writer.addPage(image);
+                }
+            } finally {
+                writer.close();
+            }
+        }
+        return pageCount;
+    }
+
+    /**
+     * Documents and pages rendered by {@link #render(List, File, int)}, and the time taken.
+     */
+    public static final class Result {
+        public final int documentCount;
+        public final int pageCount;
+        public final long nanos;
+
+        Result(int documentCount, int pageCount, long nanos) {
+            this.documentCount = documentCount;
+            this.pageCount = pageCount;
+            this.nanos = nanos;
+        }
+
+        public double getPagesPerSecond() {
+            return nanos > 0 ? pageCount * 1e9 / nanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d documents, %d pages in %.2f s, %.1f pages/s", documentCount,
+                    pageCount, nanos / 1e9, getPagesPerSecond());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> paths = new ArrayList<String>();
+        Format format = Format.PNG;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        float dpi = 150;
+        String fontName = Font.SERIF;
+        float textSize = 18;
+        float spacing = 6;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                paths.add(arg);
+            } else if (i + 1 >= args.length) {
+                usage("Missing value of " + arg);
+            } else if (arg.equals("--format")) {
+                format = Format.valueOf(args[++i].toUpperCase(Locale.US));
+            } else if (arg.equals("--threads")) {
+                threadCount = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--dpi")) {
+                dpi = Float.parseFloat(args[++i]);
+            } else if (arg.equals("--font")) {
+                fontName = args[++i];
+            } else if (arg.equals("--text-size")) {
+                textSize = Float.parseFloat(args[++i]);
+            } else if (arg.equals("--spacing")) {
+                spacing = Float.parseFloat(args[++i]);
+            } else {
+                usage("Unknown option " + arg);
+            }
+        }
+        if (paths.size() < 2) {
+            usage("Missing input or output");
+        }
+
+        List<File> inputs = new ArrayList<File>();
+        for (String path : paths.subList(0, paths.size() - 1)) {
+            File file = new File(path);
+            File[] files = file.isDirectory() ? file.listFiles() : new File[]{file};
+            if (files != null) {
+                Arrays.sort(files);
+                for (File input : files) {
+                    if (input.isFile()) {
+                        inputs.add(input);
+                    }
+                }
+            }
+        }
+        File outputDir = new File(paths.get(paths.size() - 1));
+
+        float scale = dpi / 72F; // points to pixels
+        PinyinPageRenderer renderer = new PinyinPageRenderer();
+        renderer.setFont(new Font(fontName, Font.PLAIN, 1));
+        renderer.setTextSize(Math.round(textSize * scale));
+        renderer.setHorizontalSpacing(Math.round(spacing * scale));
+        renderer.setVerticalSpacing(Math.round(spacing * scale));
+        renderer.setPageSize(Math.round(PAGE_WIDTH * scale), Math.round(PAGE_HEIGHT * scale),
+                Math.round(MARGIN * scale));
+
+        Result result = new PinyinBatchRenderer(renderer, format, dpi).render(inputs, outputDir, threadCount);
+        System.out.println(result + " on " + threadCount + " threads");
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: <input dir or files...> <output dir> [--format png|pdf] [--threads N] [--dpi 150]"
+                + " [--font Serif] [--text-size 18] [--spacing 6]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,87 @@
+package com.uudove.pinyin.widget;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text-Pinyin items of a worksheet, like the pair list given to {@code PinyinTextView.setPinyinText}.<br/>
+ * An item whose text ends with '\n' ends its line, the next item starts a new paragraph.
+ *
+ * @author wangjingtao
+ */
+public final class PinyinDocument {
+
+    private final String mName;
+    private final String[] mTexts;
+    private final String[] mPinyins;
+
+    /**
+     * @param name    name of the document, output files are named after it.
+     * @param texts   text of each item.
+     * @param pinyins pinyin of each item, the same count as texts.
+     */
+    public PinyinDocument(String name, String[] texts, String[] pinyins) {
+        if (texts.length != pinyins.length) {
+            throw new IllegalArgumentException(texts.length + " texts, " + pinyins.length + " pinyins");
+        }
+        mName = name;
+        mTexts = texts;
+        mPinyins = pinyins;
+    }
+
+    /**
+     * Read a document from a UTF-8 file with an item per line, text and pinyin separated by a tab. Pinyin may be
+     * left out for punctuation. An empty line ends a paragraph.
+     *
+     * @param file file to read, the document is named after it without extension.
+     */
+    public static PinyinDocument read(File file) throws IOException {
+        List<String> texts = new ArrayList<String>();
+        List<String> pinyins = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    // hard break after the last item
+                    int last = texts.size() - 1;
+                    if (last >= 0 && !texts.get(last).endsWith("\n")) {
+                        texts.set(last, texts.get(last) + "\n");
+                    }
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                texts.add(tab >= 0 ? line.substring(0, tab) : line);
+                pinyins.add(tab >= 0 ? line.substring(tab + 1) : "");
+            }
+        } finally {
+            reader.close();
+        }
+
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return new PinyinDocument(dot > 0 ? name.substring(0, dot) : name, texts.toArray(new String[texts.size()]),
+                pinyins.toArray(new String[pinyins.size()]));
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public int getItemCount() {
+        return mTexts.length;
+    }
+
+    public String getText(int item) {
+        return mTexts[item];
+    }
+
+    public String getPinyin(int item) {
+        return mPinyins[item];
+    }
+}
@@ -0,0 +1,268 @@
+package com.uudove.pinyin.widget;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lays out a document like {@code PinyinTextView} measures it, with java.awt fonts, and renders it to page images.
+ * <br/>
+ * Lines are broken by the same {@link PinyinLayout}: items are placed left to right with vertical spacing between
+ * them, pinyin above text, and horizontal spacing between lines. Lines that don't fit on a page start the next one.
+ * Sizes are in pixels of the page images, defaults are an A4 page at 150 dpi with 18pt text.<br/>
+ * Set up a renderer before rendering, then it can render on several threads at once.
+ *
+ * @author wangjingtao
+ */
+public final class PinyinPageRenderer {
+
+    // same as PinyinTextView
+    private static final float PINYIN_TEXT_SIZE_RADIO = 0.8F;
+
+    // measures and draws with anti-aliasing and fractional advances, so drawn text is as wide as measured
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, true);
+
+    private Font mFont = new Font(Font.SERIF, Font.PLAIN, 1);
+    private int mTextSize = 38;
+    private int mPinyinTextSize = (int) (mTextSize * PINYIN_TEXT_SIZE_RADIO);
+    private int mHorizontalSpacing = 13;
+    private int mVerticalSpacing = 13;
+    private Color mTextColor = new Color(0x333333);
+    private Color mPinyinTextColor = new Color(0x999999);
+
+    private int mPageWidth = 1240;
+    private int mPageHeight = 1754;
+    private int mMargin = 75;
+
+    // key: text, value: width in pixels at the current sizes
+    private final ConcurrentHashMap<String, Integer> mTextWidths = new ConcurrentHashMap<String, Integer>();
+    private final ConcurrentHashMap<String, Integer> mPinyinWidths = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Set the font of text and pinyin, its size is not used. Hanzi need a font with CJK glyphs.
+     */
+    public void setFont(Font font) {
+        mFont = font;
+        clearWidths();
+    }
+
+    /**
+     * Set text size in pixels, pinyin text size is set to {@value #PINYIN_TEXT_SIZE_RADIO} of it, like
+     * {@code PinyinTextView.setTextSize}.
+     */
+    public void setTextSize(int textSize) {
+        mTextSize = textSize;
+        mPinyinTextSize = (int) (textSize * PINYIN_TEXT_SIZE_RADIO);
+        clearWidths();
+    }
+
+    /**
+     * Set pinyin text size in pixels.
+     */
+    public void setPinyinTextSize(int pinyinTextSize) {
+        mPinyinTextSize = pinyinTextSize;
+        clearWidths();
+    }
+
+    /**
+     * Set line spacing in pixels, like {@code PinyinTextView.setHorizontalSpacing}. Text is half of it below the
+     * pinyin descent.
+     */
+    public void setHorizontalSpacing(int horizontalSpacing) {
+        mHorizontalSpacing = horizontalSpacing;
+    }
+
+    /**
+     * Set spacing between items in pixels, like {@code PinyinTextView.setVerticalSpacing}.
+     */
+    public void setVerticalSpacing(int verticalSpacing) {
+        mVerticalSpacing = verticalSpacing;
+    }
+
+    public void setTextColor(Color textColor) {
+        mTextColor = textColor;
+    }
+
+    public void setPinyinTextColor(Color pinyinTextColor) {
+        mPinyinTextColor = pinyinTextColor;
+    }
+
+    /**
+     * Set the page size in pixels, and the margin on every side.
+     */
+    public void setPageSize(int pageWidth, int pageHeight, int margin) {
+        mPageWidth = pageWidth;
+        mPageHeight = pageHeight;
+        mMargin = margin;
+    }
+
+    public int getPageWidth() {
+        return mPageWidth;
+    }
+
+    public int getPageHeight() {
+        return mPageHeight;
+    }
+
+    private void clearWidths() {
+        mTextWidths.clear();
+        mPinyinWidths.clear();
+    }
+
+    /**
+     * Measure the document, break it into lines and lines into pages.
+     */
+    public Pages paginate(PinyinDocument document) {
+        Font textFont = mFont.deriveFont((float) mTextSize);
+        Font pinyinFont = mFont.deriveFont((float) mPinyinTextSize);
+
+        int count = document.getItemCount();
+        int[] textWidths = new int[count];
+        int[] pinyinWidths = new int[count];
+        int breakCount = 0;
+        for (int i = 0; i < count; i++) {
+            String text = document.getText(i);
+            if (text.endsWith("\n")) {
+                breakCount++;
+            }
+            textWidths[i] = getWidth(mTextWidths, stripBreak(text), textFont);
+            pinyinWidths[i] = getWidth(mPinyinWidths, document.getPinyin(i), pinyinFont);
+        }
+        int[] hardBreaks = new int[breakCount];
+        breakCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (document.getText(i).endsWith("\n")) {
+                hardBreaks[breakCount++] = i;
+            }
+        }
+
+        // line heights from the font ascent, and text below the pinyin descent, like PrecomputedPinyinText
+        LineMetrics pinyinMetrics = pinyinFont.getLineMetrics("a", FONT_RENDER_CONTEXT);
+        int textHeight = (int) Math.ceil(textFont.getLineMetrics("中", FONT_RENDER_CONTEXT).getAscent());
+        int pinyinHeight = (int) Math.ceil(pinyinMetrics.getAscent());
+        int pinyinDescent = (int) Math.ceil(pinyinMetrics.getDescent());
+        PinyinLayout layout = PinyinLayout.create(count, textWidths, pinyinWidths, hardBreaks, textHeight,
+                pinyinHeight, pinyinDescent + mHorizontalSpacing / 2, mHorizontalSpacing, mVerticalSpacing,
+                Math.max(mPageWidth - mMargin * 2, 0));
+
+        // fill each page with the lines that fit, text descent included. A page has at least one line
+        int lineCount = layout.getLineCount();
+        int[] pageStarts = new int[lineCount + 1];
+        int pageCount = 0;
+        int availableHeight = mPageHeight - mMargin * 2;
+        int descent = textHeight / 4;
+        int line = 0;
+        while (line < lineCount) {
+            pageStarts[pageCount++] = line;
+            int top = layout.getLineTop(line);
+            line++;
+            while (line < lineCount && layout.getLineBottom(line) + descent - top <= availableHeight) {
+                line++;
+            }
+        }
+        pageStarts[pageCount] = lineCount;
+        return new Pages(document, layout, textFont, pinyinFont, pageStarts, pageCount);
+    }
+
+    /**
+     * Render a page of the paginated document.
+     *
+     * @param page index of the page, less than {@link Pages#getPageCount()}.
+     */
+    public BufferedImage renderPage(Pages pages, int page) {
+        PinyinDocument document = pages.mDocument;
+        PinyinLayout layout = pages.mLayout;
+        int firstLine = pages.mPageStarts[page];
+        int endLine = pages.mPageStarts[page + 1];
+        int left = mMargin;
+        int top = mMargin - (firstLine < endLine ? layout.getLineTop(firstLine) : 0);
+
+        BufferedImage image = new BufferedImage(mPageWidth, mPageHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, mPageWidth, mPageHeight);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+
+            // all text, then all pinyin, like PinyinTextView
+            g.setFont(pages.mTextFont);
+            g.setColor(mTextColor);
+            for (int line = firstLine; line < endLine; line++) {
+                int baseline = top + layout.getTextBaseline(line);
+                for (int i = layout.getLineStart(line); i < layout.getLineEnd(line); i++) {
+                    String text = stripBreak(document.getText(i));
+                    if (!text.isEmpty()) {
+                        g.drawString(text, left + layout.getItemLeft(i), baseline);
+                    }
+                }
+            }
+            g.setFont(pages.mPinyinFont);
+            g.setColor(mPinyinTextColor);
+            for (int line = firstLine; line < endLine; line++) {
+                int baseline = top + layout.getPinyinBaseline(line);
+                for (int i = layout.getLineStart(line); i < layout.getLineEnd(line); i++) {
+                    String pinyin = document.getPinyin(i);
+                    if (!pinyin.isEmpty()) {
+                        g.drawString(pinyin, left + layout.getItemLeft(i), baseline);
+                    }
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private static int getWidth(ConcurrentHashMap<String, Integer> widths, String text, Font font) {
+        Integer width = widths.get(text);
+        if (width == null) {
+            width = (int) Math.ceil(font.getStringBounds(text, FONT_RENDER_CONTEXT).getWidth());
+            widths.put(text, width);
+        }
+        return width;
+    }
+
+    // text without the hard break at its end, which is not drawn
+    private static String stripBreak(String text) {
+        return text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    /**
+     * A document broken into lines and pages, see {@link #paginate(PinyinDocument)}.
+     */
+    public static final class Pages {
+        private final PinyinDocument mDocument;
+        private final PinyinLayout mLayout;
+        private final Font mTextFont;
+        private final Font mPinyinFont;
+        private final int[] mPageStarts; // first line of each page, and the line count
+        private final int mPageCount;
+
+        Pages(PinyinDocument document, PinyinLayout layout, Font textFont, Font pinyinFont, int[] pageStarts,
+              int pageCount) {
+            mDocument = document;
+            mLayout = layout;
+            mTextFont = textFont;
+            mPinyinFont = pinyinFont;
+            mPageStarts = pageStarts;
+            mPageCount = pageCount;
+        }
+
+        public PinyinDocument getDocument() {
+            return mDocument;
+        }
+
+        /**
+         * @return number of pages, 0 if the document has no items.
+         */
+        public int getPageCount() {
+            return mPageCount;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+
+import com.uudove.pinyin.dict.PhraseDictionary;
+
+/**
+ * Build the phrase dictionary read by com.uudove.pinyin.dict.PhraseDictionary.
+ * <pre>
+ * javac -d build -sourcepath library/src/main/java tools/pinyin-table/BuildPhraseTable.java
+ * java -cp build BuildPhraseTable phrases.txt phrases.dat
+ * </pre>
+ * Each line of phrases.txt is a phrase and one tone marked syllable per hanzi, e.g. "银行: yín háng". Text after
+ * '#' is a comment. This is the format of https://github.com/mozillazg/phrase-pinyin-data and of
+ * pinyin_dict_phrase.txt next to this file, the input of the phrase table shipped with the library.
+ */
+public class BuildPhraseTable {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BuildPhraseTable phrases.txt phrases.dat");
+            System.exit(1);
+        }
+
+        PhraseDictionary.Builder builder = new PhraseDictionary.Builder();
+        int count = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(args[0]), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                int colon = line.indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                String phrase = line.substring(0, colon).trim();
+                String[] pinyin = line.substring(colon + 1).trim().split("\\s+");
+                try {
+                    builder.add(phrase, pinyin);
+                    count++;
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipped: " + line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        long start = System.nanoTime();
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]));
+        try {
+            builder.writeTo(out);
+        } finally {
+            out.close();
+        }
+        System.out.println(count + " phrases in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+}
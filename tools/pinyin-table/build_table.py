@@ -0,0 +1,121 @@
+#!/usr/bin/env python3
+"""Build the binary pinyin table read by com.uudove.pinyin.dict.PinyinDictionary.
+
+Usage:
+    build_table.py Unihan_Readings.txt pinyin.dat
+    build_table.py pinyin_dict_char.txt pinyin.dat
+
+Unihan_Readings.txt is part of https://www.unicode.org/Public/UCD/latest/ucd/Unihan.zip
+The most common reading comes from kMandarin, other readings from kHanyuPinyin and
+kXHC1983.
+Other inputs list a hanzi per line with its readings, most common first, like
+"行:xíng,háng". pinyin_dict_char.txt in this directory is such a list, the table shipped
+in library/src/main/assets is built from it, see README.md.
+See PinyinDictionary.MAGIC for the table format.
+"""
+
+import re
+import struct
+import sys
+
+MAGIC = 0x50595431
+
+# only the BMP ideograph blocks are indexed, so the index stays small
+FIRST_CODE_POINT = 0x3400
+LAST_CODE_POINT = 0x9FFF
+
+
+def parse_readings(path):
+    readings = {}  # code point -> {field: [syllables]}
+    with open(path, encoding='utf-8') as f:
+        for line in f:
+            if not line.startswith('U+'):
+                if ':' in line and len(line.split(':', 1)[0]) == 1:
+                    # "行:xíng,háng", kept in the order of kMandarin
+                    code_point = ord(line[0])
+                    if FIRST_CODE_POINT <= code_point <= LAST_CODE_POINT:
+                        readings[code_point] = {'kMandarin': line.rstrip('\n').split(':', 1)[1].split(',')}
+                continue
+            code, field, value = line.rstrip('\n').split('\t', 2)
+            code_point = int(code[2:], 16)
+            if code_point < FIRST_CODE_POINT or code_point > LAST_CODE_POINT:
+                continue
+            if field == 'kMandarin':
+                syllables = value.split()
+            elif field in ('kHanyuPinyin', 'kXHC1983'):
+                # "10019.020:tiàn,tian 10020.030:diàn"
+                syllables = []
+                for entry in value.split():
+                    syllables.extend(entry.split(':', 1)[1].split(','))
+            else:
+                continue
+            readings.setdefault(code_point, {})[field] = syllables
+    return readings
+
+
+def ordered(fields):
+    result = []
+    for field in ('kMandarin', 'kHanyuPinyin', 'kXHC1983'):
+        for syllable in fields.get(field, []):
+            syllable = re.sub(r'\s', '', syllable)
+            if syllable and syllable not in result:
+                result.append(syllable)
+    return result
+
+
+def build(readings):
+    syllable_ids = {}
+    syllables = []
+    index = [0] * (LAST_CODE_POINT - FIRST_CODE_POINT + 1)
+    polyphones = []
+
+    def syllable_id(syllable):
+        if syllable not in syllable_ids:
+            syllable_ids[syllable] = len(syllables)
+            syllables.append(syllable)
+        return syllable_ids[syllable]
+
+    for code_point in sorted(readings):
+        ids = [syllable_id(s) for s in ordered(readings[code_point])]
+        if not ids:
+            continue
+        if len(ids) == 1:
+            index[code_point - FIRST_CODE_POINT] = ids[0] + 1
+        else:
+            if len(polyphones) > 0x7fff:
+                raise ValueError('too many polyphones for a 15 bit offset')
+            index[code_point - FIRST_CODE_POINT] = len(polyphones) | 0x8000
+            polyphones.append(len(ids))
+            polyphones.extend(ids)
+
+    if len(syllables) > 0x7ffe:
+        raise ValueError('too many syllables')
+
+    starts = [0]
+    chars = []
+    for syllable in syllables:
+        units = syllable.encode('utf-16-be')
+        chars.append(units)
+        starts.append(starts[-1] + len(units) // 2)
+
+    out = bytearray()
+    out += struct.pack('>6i', MAGIC, FIRST_CODE_POINT, LAST_CODE_POINT, len(syllables), starts[-1],
+                       len(polyphones))
+    out += struct.pack('>%di' % len(starts), *starts)
+    out += b''.join(chars)
+    out += struct.pack('>%dH' % len(index), *index)
+    out += struct.pack('>%dH' % len(polyphones), *polyphones)
+    return out, len(syllables), sum(1 for v in index if v)
+
+
+def main():
+    if len(sys.argv) != 3:
+        sys.exit(__doc__)
+    table, syllable_count, char_count = build(parse_readings(sys.argv[1]))
+    with open(sys.argv[2], 'wb') as f:
+        f.write(table)
+    print('%d chars, %d syllables, %d bytes' % (char_count, syllable_count, len(table)))
+
+
+if __name__ == '__main__':
+    main()